@@ -0,0 +1,370 @@
+import java.util.Arrays;
+
+/**
+ * BatchSimulator - plays thousands of Poker Squares games in lockstep, for training data generation and heuristic
+ * tuning at tens of millions of games.
+ *
+ * Games are held in struct-of-arrays form: the dealt card ids of all games, one occupancy mask per game (bit
+ * r * SIZE + c set if (r, c) is occupied), and packed per-line state, i.e. the rank counts (4 bits per rank) and suit
+ * mask of each row and column of each game.  At each of the 25 steps, every game is dealt its next card and the policy
+ * places it, and after the last step all lines of all games are classified in one batch with
+ * {@link PokerHand#getPokerHandIds(long[], int[], int, int, byte[])} and scored with
+ * {@link PokerSquaresPointSystem#getScores(byte[], int, int, int[])}.  No objects are created per game or move.
+ *
+ * Policies are primitive callbacks ({@link Policy}) that read the state of a game through the simulator's accessors
+ * rather than through Card objects and grids.  Deals are exactly those of {@link PokerSquares#play(long)} for the same
+ * seeds, or come from a {@link DealFile}.
+ */
+public class BatchSimulator {
+
+	private static final int SIZE = PokerSquares.SIZE; // square grid size
+	private static final int NUM_POS = SIZE * SIZE; // number of grid positions
+	private static final int NUM_LINES = 2 * SIZE; // number of lines (rows, then columns) per grid
+	private static final int ALL_POSITIONS = (1 << NUM_POS) - 1; // occupancy mask of a full grid
+
+	/**
+	 * A placement policy for batch games.
+	 */
+	public interface Policy {
+		/**
+		 * Choose the cell of the given card in the given game.  The game state is read through the simulator's
+		 * accessors, e.g. {@link BatchSimulator#getOccupancy(int)} and {@link BatchSimulator#getRankCounts(int, int)}.
+		 * @param simulator batch simulator
+		 * @param game game index
+		 * @param cardId id of the card to place
+		 * @return row-major index of an empty cell
+		 */
+		int getPlay(BatchSimulator simulator, int game, int cardId);
+	}
+
+	private final int batchSize; // number of games played in lockstep
+	private final PokerSquaresPointSystem system; // point system
+	private final int[] scoreTable; // hand scores of the point system
+	private final DealShuffler shuffler = new DealShuffler(); // deal generator
+	private final byte[] cardIds; // dealt card ids, NUM_POS per game in deal order
+	private final byte[] cells; // cells of the plays made, NUM_POS per game in deal order
+	private final int[] occupancy; // occupancy mask per game
+	private final byte[] emptyCells; // empty cells, NUM_POS per game, of which the first NUM_POS - numPlayed are empty
+	private final byte[] emptyIndices; // index of each cell in emptyCells, NUM_POS per game
+	private final long[] lineRankCounts; // packed rank counts, NUM_LINES per game (rows 0-4, then columns 0-4)
+	private final int[] lineSuitMasks; // suit masks, NUM_LINES per game (rows 0-4, then columns 0-4)
+	private final byte[] handIds; // final hand classification ids, NUM_LINES per game
+	private final int[] scores; // final scores per game
+	private int numGames; // number of games in the current batch
+	private int numPlayed; // number of cards played in each game of the current batch
+
+	/**
+	 * Create a batch simulator.
+	 * @param batchSize maximum number of games played in lockstep (e.g. 4096)
+	 * @param system point system
+	 */
+	public BatchSimulator(int batchSize, PokerSquaresPointSystem system) {
+		this.batchSize = batchSize;
+		this.system = system;
+		scoreTable = system.getScoreTable();
+		cardIds = new byte[batchSize * NUM_POS];
+		cells = new byte[batchSize * NUM_POS];
+		occupancy = new int[batchSize];
+		emptyCells = new byte[batchSize * NUM_POS];
+		emptyIndices = new byte[batchSize * NUM_POS];
+		lineRankCounts = new long[batchSize * NUM_LINES];
+		lineSuitMasks = new int[batchSize * NUM_LINES];
+		handIds = new byte[batchSize * NUM_LINES];
+		scores = new int[batchSize];
+	}
+
+	/**
+	 * Get the maximum number of games played in lockstep.
+	 * @return the batch size
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * Get the point system.
+	 * @return the point system
+	 */
+	public PokerSquaresPointSystem getPointSystem() {
+		return system;
+	}
+
+	/**
+	 * Get the number of cards played so far in each game of the current batch.
+	 * @return the number of cards played
+	 */
+	public int getNumPlayed() {
+		return numPlayed;
+	}
+
+	/**
+	 * Get the occupancy mask of the given game: bit r * SIZE + c is set if (r, c) is occupied.
+	 * @param game game index
+	 * @return the occupancy mask of the given game
+	 */
+	public int getOccupancy(int game) {
+		return occupancy[game];
+	}
+
+	/**
+	 * Get the ith empty cell of the given game, for 0 <= i < NUM_POS - {@link #getNumPlayed()}.  (Empty cells are in
+	 * no particular order.)
+	 * @param game game index
+	 * @param i index of empty cell
+	 * @return row-major index of the ith empty cell
+	 */
+	public int getEmptyCell(int game, int i) {
+		return emptyCells[game * NUM_POS + i];
+	}
+
+	/**
+	 * Get the packed rank counts of the given line of the given game (4 bits per rank, as for
+	 * {@link PokerHand#getPokerHandId(long, int)}).
+	 * @param game game index
+	 * @param line line index: rows 0 through 4, then columns 0 through 4 as 5 through 9
+	 * @return the packed rank counts of the line
+	 */
+	public long getRankCounts(int game, int line) {
+		return lineRankCounts[game * NUM_LINES + line];
+	}
+
+	/**
+	 * Get the suit mask of the given line of the given game.
+	 * @param game game index
+	 * @param line line index: rows 0 through 4, then columns 0 through 4 as 5 through 9
+	 * @return the bitwise or of 1 << suit over the line's cards
+	 */
+	public int getSuitMask(int game, int line) {
+		return lineSuitMasks[game * NUM_LINES + line];
+	}
+
+	/**
+	 * Get the id of the kth card dealt in the given game of the current batch.
+	 * @param game game index
+	 * @param k index of card in deal order
+	 * @return card identification number
+	 */
+	public int getCardId(int game, int k) {
+		return cardIds[game * NUM_POS + k];
+	}
+
+	/**
+	 * Get the cell of the kth play in the given game of the last batch.
+	 * @param game game index
+	 * @param k index of play in deal order
+	 * @return row-major cell index
+	 */
+	public int getCell(int game, int k) {
+		return cells[game * NUM_POS + k];
+	}
+
+	/**
+	 * Get the final score of the given game of the last batch.
+	 * @param game game index
+	 * @return final game score
+	 */
+	public int getScore(int game) {
+		return scores[game];
+	}
+
+	/**
+	 * Play a batch of games dealt from successive seeds with the given policy and return their final scores.
+	 * @param policy placement policy
+	 * @param startSeed seed of the first game
+	 * @param numGames number of games (at most the batch size)
+	 * @return final game scores by game index (valid until the next batch)
+	 */
+	public int[] playBatch(Policy policy, long startSeed, int numGames) {
+		for (int game = 0; game < numGames; game++) {
+			shuffler.startDeal(startSeed + game);
+			for (int k = 0, i = game * NUM_POS; k < NUM_POS; k++)
+				cardIds[i++] = (byte) shuffler.dealNext();
+		}
+		return play(policy, numGames);
+	}
+
+	/**
+	 * Play a batch of games of a deal file with the given policy and return their final scores.
+	 * @param policy placement policy
+	 * @param deals deal file
+	 * @param firstDeal index of the first deal
+	 * @param numGames number of games (at most the batch size)
+	 * @return final game scores by game index (valid until the next batch)
+	 */
+	public int[] playBatch(Policy policy, DealFile deals, int firstDeal, int numGames) {
+		for (int game = 0; game < numGames; game++)
+			for (int k = 0, i = game * NUM_POS; k < NUM_POS; k++)
+				cardIds[i++] = (byte) deals.getCardId(firstDeal + game, k);
+		return play(policy, numGames);
+	}
+
+	/**
+	 * Play the dealt games of the current batch in lockstep and score them.
+	 * @param policy placement policy
+	 * @param numGames number of games
+	 * @return final game scores by game index
+	 */
+	private int[] play(Policy policy, int numGames) {
+		if (numGames > batchSize)
+			throw new IllegalArgumentException("Batch of " + numGames + " games exceeds batch size " + batchSize);
+		this.numGames = numGames;
+		Arrays.fill(occupancy, 0, numGames, 0);
+		Arrays.fill(lineRankCounts, 0, numGames * NUM_LINES, 0L);
+		Arrays.fill(lineSuitMasks, 0, numGames * NUM_LINES, 0);
+		for (int game = 0, i = 0; game < numGames; game++)
+			for (int cell = 0; cell < NUM_POS; cell++, i++) {
+				emptyCells[i] = (byte) cell;
+				emptyIndices[i] = (byte) cell;
+			}
+		for (numPlayed = 0; numPlayed < NUM_POS; numPlayed++)
+			for (int game = 0; game < numGames; game++) {
+				int cardId = cardIds[game * NUM_POS + numPlayed];
+				int cell = policy.getPlay(this, game, cardId);
+				if (cell < 0 || cell >= NUM_POS || (occupancy[game] & (1 << cell)) != 0)
+					throw new IllegalStateException("Illegal play " + cell + " in game " + game);
+				int base = game * NUM_POS;
+				cells[base + numPlayed] = (byte) cell;
+				occupancy[game] |= 1 << cell;
+				int last = emptyCells[base + NUM_POS - 1 - numPlayed]; // move the last empty cell into the played cell's place
+				int index = emptyIndices[base + cell];
+				emptyCells[base + index] = (byte) last;
+				emptyIndices[base + last] = (byte) index;
+				long rankCount = 1L << (4 * (cardId % Card.NUM_RANKS));
+				int suitBit = 1 << (cardId / Card.NUM_RANKS);
+				int row = game * NUM_LINES + cell / SIZE;
+				int col = game * NUM_LINES + SIZE + cell % SIZE;
+				lineRankCounts[row] += rankCount;
+				lineSuitMasks[row] |= suitBit;
+				lineRankCounts[col] += rankCount;
+				lineSuitMasks[col] |= suitBit;
+			}
+		scoreLines();
+		return scores;
+	}
+
+	/**
+	 * Classify all lines of all games of the current batch with the branch-free batch classifier over the line state
+	 * arrays, and score the games.
+	 */
+	private void scoreLines() {
+		PokerHand.getPokerHandIds(lineRankCounts, lineSuitMasks, 0, numGames * NUM_LINES, handIds);
+		system.getScores(handIds, 0, numGames, scores);
+	}
+
+	/**
+	 * Play the given number of games dealt from successive seeds, in batches, and return their score statistics.
+	 * @param policy placement policy
+	 * @param numGames number of games
+	 * @param startSeed seed of the first game
+	 * @return statistics of the game scores
+	 */
+	public ScoreStatistics playSequence(Policy policy, int numGames, long startSeed) {
+		ScoreStatistics statistics = new ScoreStatistics();
+		for (int first = 0; first < numGames; first += batchSize) {
+			int n = Math.min(batchSize, numGames - first);
+			int[] batchScores = playBatch(policy, startSeed + first, n);
+			for (int game = 0; game < n; game++)
+				statistics.add(batchScores[game]);
+		}
+		return statistics;
+	}
+
+	/**
+	 * Return the change in score of the given game if the given card were placed in the given empty cell.
+	 * @param game game index
+	 * @param cardId card id
+	 * @param cell row-major index of an empty cell
+	 * @return the change in score of the game's row and column of the cell
+	 */
+	public int getPlacementDelta(int game, int cardId, int cell) {
+		long rankCount = 1L << (4 * (cardId % Card.NUM_RANKS));
+		int suitBit = 1 << (cardId / Card.NUM_RANKS);
+		int row = game * NUM_LINES + cell / SIZE;
+		int col = game * NUM_LINES + SIZE + cell % SIZE;
+		return scoreTable[PokerHand.getPokerHandId(lineRankCounts[row] + rankCount, lineSuitMasks[row] | suitBit)]
+				- scoreTable[PokerHand.getPokerHandId(lineRankCounts[row], lineSuitMasks[row])]
+				+ scoreTable[PokerHand.getPokerHandId(lineRankCounts[col] + rankCount, lineSuitMasks[col] | suitBit)]
+				- scoreTable[PokerHand.getPokerHandId(lineRankCounts[col], lineSuitMasks[col])];
+	}
+
+	/**
+	 * Return a policy that places each card in a uniformly random empty cell.
+	 * @param random pseudorandom number generator (not to be shared between threads)
+	 * @return a uniformly random placement policy
+	 */
+	public static Policy getRandomPolicy(final FastRandom random) {
+		return new Policy() {
+			@Override
+			public int getPlay(BatchSimulator simulator, int game, int cardId) {
+				return simulator.getEmptyCell(game, random.nextInt(NUM_POS - simulator.getNumPlayed()));
+			}
+		};
+	}
+
+	/**
+	 * Return a policy that places each card where it most increases the score of the partial grid, preferring the
+	 * lowest such cell.
+	 * @return a greedy placement policy (not to be shared between threads)
+	 */
+	public static Policy getGreedyPolicy() {
+		return new Policy() {
+			private final int[] lineScores = new int[NUM_LINES]; // current line scores of the game being played
+
+			@Override
+			public int getPlay(BatchSimulator simulator, int game, int cardId) {
+				int[] scoreTable = simulator.scoreTable;
+				long rankCount = 1L << (4 * (cardId % Card.NUM_RANKS));
+				int suitBit = 1 << (cardId / Card.NUM_RANKS);
+				int offset = game * NUM_LINES;
+				for (int line = 0; line < NUM_LINES; line++)
+					lineScores[line] = scoreTable[PokerHand.getPokerHandId(simulator.lineRankCounts[offset + line], simulator.lineSuitMasks[offset + line])];
+				int empty = ~simulator.getOccupancy(game) & ALL_POSITIONS;
+				int bestCell = -1;
+				int bestDelta = Integer.MIN_VALUE;
+				for (; empty != 0; empty &= empty - 1) {
+					int cell = Integer.numberOfTrailingZeros(empty);
+					int row = cell / SIZE;
+					int col = SIZE + cell % SIZE;
+					int delta = scoreTable[PokerHand.getPokerHandId(simulator.lineRankCounts[offset + row] + rankCount, simulator.lineSuitMasks[offset + row] | suitBit)]
+							- lineScores[row]
+							+ scoreTable[PokerHand.getPokerHandId(simulator.lineRankCounts[offset + col] + rankCount, simulator.lineSuitMasks[offset + col] | suitBit)]
+							- lineScores[col];
+					if (delta > bestDelta) {
+						bestDelta = delta;
+						bestCell = cell;
+					}
+				}
+				return bestCell;
+			}
+		};
+	}
+
+	/**
+	 * Demonstrate batch game throughput of the random and greedy policies, in comparison with the object-based engine.
+	 * @param args (not used)
+	 */
+	public static void main(String[] args) {
+		PokerSquaresPointSystem system = PokerSquaresPointSystem.getBritishPointSystem();
+		BatchSimulator simulator = new BatchSimulator(4096, system);
+		String[] names = {"random", "greedy"};
+		Policy[] policies = {getRandomPolicy(new FastRandom(0L)), getGreedyPolicy()};
+		int numGames = 4000000;
+		for (int p = 0; p < policies.length; p++) {
+			simulator.playSequence(policies[p], numGames / 10, 0L); // warm-up
+			long startTime = System.nanoTime();
+			ScoreStatistics statistics = simulator.playSequence(policies[p], numGames, 0L);
+			double seconds = (System.nanoTime() - startTime) / 1e9;
+			System.out.printf("Batch %s policy: %.0f games/minute\n%s\n", names[p], numGames * 60 / seconds, statistics);
+		}
+		PokerSquares game = new PokerSquares(new RandomPlayer(), system);
+		game.setVerbose(false);
+		int objectGames = 100000;
+		for (int i = 0; i < objectGames / 10; i++) // warm-up
+			game.play((long) i);
+		long startTime = System.nanoTime();
+		for (int i = 0; i < objectGames; i++)
+			game.play((long) i);
+		double seconds = (System.nanoTime() - startTime) / 1e9;
+		System.out.printf("PokerSquares RandomPlayer: %.0f games/minute\n", objectGames * 60 / seconds);
+	}
+}
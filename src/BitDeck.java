@@ -0,0 +1,140 @@
+/**
+ * BitDeck - the set of remaining (undealt) cards of a deck, for players' search and simulation.
+ *
+ * Remaining cards are kept both as a 52-bit set (bit c set if the card with id c remains; see {@link Card#getCardId()})
+ * and as an indexed permutation of card ids whose first {@link #size()} entries are the remaining cards, so that:
+ * <ul>
+ * <li>{@link #remove(int)} and {@link #restore()} (undoing removals in last-in, first-out order) take constant
+ * time;</li>
+ * <li>{@link #sample(FastRandom)} draws a uniformly random remaining card in constant time;</li>
+ * <li>remaining cards may be iterated in ascending card id order over the set bits of {@link #getRemaining()}, or in
+ * permutation order with {@link #getCardId(int)};</li>
+ * <li>remaining counts per rank and per suit are population counts.</li>
+ * </ul>
+ */
+public class BitDeck {
+
+	private static final int NUM_CARDS = Card.NUM_CARDS; // number of cards in deck
+	private static final int NUM_RANKS = Card.NUM_RANKS; // number of ranks
+	private static final long ALL_CARDS = (1L << NUM_CARDS) - 1; // set of all cards
+	private static final long SUIT_RANKS = (1L << NUM_RANKS) - 1; // set of all cards of suit 0
+	private static final long RANK_CARDS = 1L | (1L << NUM_RANKS) | (1L << (2 * NUM_RANKS)) | (1L << (3 * NUM_RANKS)); // set of all cards of rank 0
+
+	private long remaining; // set of remaining cards
+	private final int[] cardIds = new int[NUM_CARDS]; // permutation of card ids: remaining cards first, then removed cards, last removed first
+	private final int[] positions = new int[NUM_CARDS]; // position of each card id in cardIds
+	private int size; // number of remaining cards
+
+	/**
+	 * Create a full deck.
+	 */
+	public BitDeck() {
+		reset();
+	}
+
+	/**
+	 * Restore all cards to the deck, in card id order, and forget all removals.
+	 */
+	public void reset() {
+		for (int id = 0; id < NUM_CARDS; id++) {
+			cardIds[id] = id;
+			positions[id] = id;
+		}
+		remaining = ALL_CARDS;
+		size = NUM_CARDS;
+	}
+
+	/**
+	 * Get the number of remaining cards.
+	 * @return the number of remaining cards
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Get the set of remaining cards: bit c is set if the card with id c remains.
+	 * @return the set of remaining cards
+	 */
+	public long getRemaining() {
+		return remaining;
+	}
+
+	/**
+	 * Return whether or not the given card remains.
+	 * @param cardId card id
+	 * @return whether or not the given card remains
+	 */
+	public boolean contains(int cardId) {
+		return (remaining & (1L << cardId)) != 0;
+	}
+
+	/**
+	 * Get the id of the remaining card at the given index of the permutation.
+	 * @param index index, at least 0 and less than size()
+	 * @return the card id at the given index
+	 */
+	public int getCardId(int index) {
+		return cardIds[index];
+	}
+
+	/**
+	 * Remove a remaining card.
+	 * @param cardId id of a remaining card
+	 */
+	public void remove(int cardId) {
+		int position = positions[cardId];
+		int lastId = cardIds[--size];
+		cardIds[position] = lastId;
+		positions[lastId] = position;
+		cardIds[size] = cardId;
+		positions[cardId] = size;
+		remaining &= ~(1L << cardId);
+	}
+
+	/**
+	 * Restore the most recently removed card that has not yet been restored.
+	 * @return the id of the restored card
+	 */
+	public int restore() {
+		int cardId = cardIds[size++];
+		remaining |= 1L << cardId;
+		return cardId;
+	}
+
+	/**
+	 * Return a uniformly random remaining card, without removing it.
+	 * @param random pseudorandom number generator
+	 * @return the id of a uniformly random remaining card
+	 */
+	public int sample(FastRandom random) {
+		return cardIds[random.nextInt(size)];
+	}
+
+	/**
+	 * Get the number of remaining cards of the given rank.
+	 * @param rank rank
+	 * @return the number of remaining cards of the given rank
+	 */
+	public int getRankCount(int rank) {
+		return Long.bitCount(remaining & (RANK_CARDS << rank));
+	}
+
+	/**
+	 * Get the number of remaining cards of the given suit.
+	 * @param suit suit
+	 * @return the number of remaining cards of the given suit
+	 */
+	public int getSuitCount(int suit) {
+		return Long.bitCount(remaining & (SUIT_RANKS << (suit * NUM_RANKS)));
+	}
+
+	/**
+	 * Get the set of remaining ranks of the given suit: bit r is set if the card of rank r and the given suit remains.
+	 * @param suit suit
+	 * @return the set of remaining ranks of the given suit
+	 */
+	public int getSuitRanks(int suit) {
+		return (int) ((remaining >>> (suit * NUM_RANKS)) & SUIT_RANKS);
+	}
+}
@@ -0,0 +1,229 @@
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * ComputeCurveRunner - measures how a player's score scales with its time budget, for hardware sizing.
+ *
+ * The player plays the same deals (successive seeds or a {@link DealFile}) at each of a range of game time budgets,
+ * typically geometric (see {@link #getGeometricBudgets(long, long, int)}).  For each budget, the runner reports the
+ * mean score with its 95% confidence interval and, from the player's {@link SearchMetrics}, the mean simulations and
+ * search nodes per move.  Since every budget sees the same deals, differences between budgets are not confounded by
+ * deal luck.
+ *
+ * Budgets are run one after another, each with its games played in parallel by one player per worker thread, so that
+ * search metrics are attributed to the right budget.  For fair timing, use no more threads than
+ * {@link PokerSquares#getOneCorePerGameThreads()} (the default).
+ */
+public class ComputeCurveRunner {
+
+	private static final int MOVES_PER_GAME = PokerSquares.SIZE * PokerSquares.SIZE; // number of moves per game
+
+	/**
+	 * Results of one game time budget.
+	 */
+	public static class BudgetResult {
+		private final long gameMillis; // game time budget
+		private final ScoreStatistics statistics; // game score statistics
+		private final double simulationsPerMove; // mean Monte Carlo simulations per move
+		private final double nodesPerMove; // mean search nodes per move
+
+		private BudgetResult(long gameMillis, ScoreStatistics statistics, double simulationsPerMove, double nodesPerMove) {
+			this.gameMillis = gameMillis;
+			this.statistics = statistics;
+			this.simulationsPerMove = simulationsPerMove;
+			this.nodesPerMove = nodesPerMove;
+		}
+
+		/**
+		 * Get the game time budget.
+		 * @return the game time budget in milliseconds
+		 */
+		public long getGameMillis() {
+			return gameMillis;
+		}
+
+		/**
+		 * Get the game score statistics.
+		 * @return the game score statistics
+		 */
+		public ScoreStatistics getStatistics() {
+			return statistics;
+		}
+
+		/**
+		 * Get the mean number of Monte Carlo simulations per move.
+		 * @return the mean number of simulations per move
+		 */
+		public double getSimulationsPerMove() {
+			return simulationsPerMove;
+		}
+
+		/**
+		 * Get the mean number of search nodes per move.
+		 * @return the mean number of search nodes per move
+		 */
+		public double getNodesPerMove() {
+			return nodesPerMove;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+			return String.format("%10d %6d %10.3f %10.3f %14.1f %14.1f", gameMillis, statistics.getCount(), statistics.getMean(),
+					statistics.getConfidenceHalfWidth(), simulationsPerMove, nodesPerMove);
+		}
+	}
+
+	private final Supplier<PokerSquaresPlayer> playerFactory; // supplier of a new, independent player per worker
+	private final PokerSquaresPointSystem system; // point system for all games
+	private int numThreads = PokerSquares.getOneCorePerGameThreads(); // number of games played at once
+
+	/**
+	 * Create a runner for the given player and point system.
+	 * @param playerFactory supplier of a new, independent player for each worker thread
+	 * @param system point system for all games
+	 */
+	public ComputeCurveRunner(Supplier<PokerSquaresPlayer> playerFactory, PokerSquaresPointSystem system) {
+		this.playerFactory = playerFactory;
+		this.system = system;
+	}
+
+	/**
+	 * Set the number of games played at once (default: {@link PokerSquares#getOneCorePerGameThreads()}).
+	 * @param numThreads number of games played at once
+	 */
+	public void setNumThreads(int numThreads) {
+		this.numThreads = numThreads;
+	}
+
+	/**
+	 * Return the given number of game time budgets in geometric progression from the minimum to the maximum.
+	 * @param minMillis minimum game time budget in milliseconds
+	 * @param maxMillis maximum game time budget in milliseconds
+	 * @param numBudgets number of budgets (at least 2)
+	 * @return game time budgets in increasing order
+	 */
+	public static long[] getGeometricBudgets(long minMillis, long maxMillis, int numBudgets) {
+		long[] budgets = new long[numBudgets];
+		double ratio = Math.pow((double) maxMillis / minMillis, 1.0 / (numBudgets - 1));
+		for (int i = 0; i < numBudgets; i++)
+			budgets[i] = Math.round(minMillis * Math.pow(ratio, i));
+		budgets[numBudgets - 1] = maxMillis;
+		return budgets;
+	}
+
+	/**
+	 * Play the games of the given seeds at each budget and return the results.
+	 * @param budgets game time budgets in milliseconds
+	 * @param numGames number of games per budget
+	 * @param startSeed seed of first game. Successive games use successive seeds
+	 * @return results per budget, in the given order
+	 */
+	public ArrayList<BudgetResult> run(long[] budgets, int numGames, long startSeed) {
+		return run(budgets, null, numGames, startSeed);
+	}
+
+	/**
+	 * Play all games of the given deal file at each budget and return the results.
+	 * @param budgets game time budgets in milliseconds
+	 * @param deals deal file
+	 * @return results per budget, in the given order
+	 */
+	public ArrayList<BudgetResult> run(long[] budgets, DealFile deals) {
+		return run(budgets, deals, deals.getNumDeals(), deals.getStartSeed());
+	}
+
+	/**
+	 * Play the given games at each budget, printing and returning the results.
+	 * @param budgets game time budgets in milliseconds
+	 * @param deals deal file, or null to deal from seeds
+	 * @param numGames number of games per budget
+	 * @param startSeed seed of first game (if dealt from seeds)
+	 * @return results per budget, in the given order
+	 */
+	private ArrayList<BudgetResult> run(long[] budgets, final DealFile deals, final int numGames, final long startSeed) {
+		final int threads = Math.max(1, Math.min(numThreads, numGames));
+		ArrayList<BudgetResult> results = new ArrayList<BudgetResult>();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			// one game per worker, reused across budgets so that each player prepares for the point system once
+			final ArrayList<PokerSquares> games = new ArrayList<PokerSquares>();
+			ArrayList<Future<PokerSquares>> created = new ArrayList<Future<PokerSquares>>();
+			for (int t = 0; t < threads; t++)
+				created.add(executor.submit(new Callable<PokerSquares>() {
+					@Override
+					public PokerSquares call() {
+						PokerSquares game = new PokerSquares(playerFactory.get(), system);
+						game.setVerbose(false);
+						return game;
+					}
+				}));
+			for (Future<PokerSquares> game : created)
+				games.add(game.get());
+			SearchMetrics metrics = SearchMetrics.getMetrics(games.get(0).getPlayer().getName());
+			System.out.printf("%s, %d games per budget on %d threads\n", games.get(0).getPlayer().getName(), numGames, threads);
+			System.out.printf("%10s %6s %10s %10s %14s %14s\n", "budget_ms", "games", "mean", "ci95", "sims/move", "nodes/move");
+			for (final long gameMillis : budgets) {
+				final AtomicInteger nextGame = new AtomicInteger();
+				long startSimulations = metrics.getSimulations();
+				long startNodes = metrics.getNodes();
+				ArrayList<Future<ScoreStatistics>> workers = new ArrayList<Future<ScoreStatistics>>();
+				for (final PokerSquares game : games)
+					workers.add(executor.submit(new Callable<ScoreStatistics>() {
+						@Override
+						public ScoreStatistics call() {
+							ScoreStatistics statistics = new ScoreStatistics();
+							game.setGameMillis(gameMillis);
+							int i;
+							while ((i = nextGame.getAndIncrement()) < numGames)
+								statistics.add(deals == null ? game.play(startSeed + i) : game.play(deals, i));
+							return statistics;
+						}
+					}));
+				ScoreStatistics statistics = new ScoreStatistics();
+				for (Future<ScoreStatistics> worker : workers)
+					statistics.merge(worker.get());
+				double moves = (double) numGames * MOVES_PER_GAME;
+				BudgetResult result = new BudgetResult(gameMillis, statistics, (metrics.getSimulations() - startSimulations) / moves,
+						(metrics.getNodes() - startNodes) / moves);
+				System.out.println(result);
+				results.add(result);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while running compute curve", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Compute curve worker failed", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+		return results;
+	}
+
+	/**
+	 * Demonstrate a compute curve of the GreedyMCPlayer with the British point system.
+	 * @param args minimum and maximum game milliseconds, number of budgets, and number of games per budget (default:
+	 * 250 4000 5 20)
+	 */
+	public static void main(String[] args) {
+		long minMillis = args.length > 0 ? Long.parseLong(args[0]) : 250L;
+		long maxMillis = args.length > 1 ? Long.parseLong(args[1]) : 4000L;
+		int numBudgets = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+		int numGames = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+		ComputeCurveRunner runner = new ComputeCurveRunner(new Supplier<PokerSquaresPlayer>() {
+			@Override
+			public PokerSquaresPlayer get() {
+				return new GreedyMCPlayer(2);
+			}
+		}, PokerSquaresPointSystem.getBritishPointSystem());
+		runner.run(getGeometricBudgets(minMillis, maxMillis, numBudgets), numGames, 0L);
+	}
+}
@@ -0,0 +1,197 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * DealFile - a compact file of precomputed deals, shared across players and runs.
+ *
+ * A deal file holds the deals of consecutive seeds as DEAL_BYTES card ids each, in deal order, after a HEADER_BYTES
+ * (big-endian) header:
+ * <pre>
+ *   offset  size  field
+ *        0     4  magic number ("PSQD")
+ *        4     4  file format version
+ *        8     4  deal generator version (GENERATOR_VERSION: java.util.Random and Collections.shuffle, as by PokerSquares)
+ *       12     4  number of deals
+ *       16     8  seed of first deal (deal i has seed startSeed + i)
+ *       24     8  (reserved)
+ * </pre>
+ * Deals are generated once with {@link #write(Path, long, int)}, and then read straight from a read-only memory
+ * mapping, so large evaluations skip shuffling altogether and runs on different JVMs see exactly the same deals.
+ * A single mapping is limited to 2 GB, i.e. about 85 million deals per file.
+ */
+public class DealFile implements Closeable {
+
+	/**
+	 * deal file magic number ("PSQD")
+	 */
+	public static final int MAGIC = 0x50535144;
+	/**
+	 * deal file format version
+	 */
+	public static final int VERSION = 1;
+	/**
+	 * deal generator version: deals of PokerSquares.play(seed), i.e. java.util.Random and Collections.shuffle
+	 */
+	public static final int GENERATOR_VERSION = 1;
+	/**
+	 * number of bytes in the file header
+	 */
+	public static final int HEADER_BYTES = 32;
+	/**
+	 * number of bytes (card ids) per deal
+	 */
+	public static final int DEAL_BYTES = PokerSquares.SIZE * PokerSquares.SIZE;
+
+	private final FileChannel channel; // file channel opened for reading
+	private final MappedByteBuffer deals; // read-only mapping of all deals
+	private final int numDeals; // number of deals
+	private final long startSeed; // seed of first deal
+
+	/**
+	 * Generate the deals of the given seeds and write them to a new deal file (replacing any existing file).
+	 * @param file deal file
+	 * @param startSeed seed of first deal. Successive deals use successive seeds
+	 * @param numDeals number of deals
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void write(Path file, long startSeed, int numDeals) throws IOException {
+		if ((long) numDeals * DEAL_BYTES > Integer.MAX_VALUE - HEADER_BYTES)
+			throw new IllegalArgumentException("Too many deals for one deal file: " + numDeals);
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		try {
+			ByteBuffer buffer = ByteBuffer.allocateDirect(Math.max(HEADER_BYTES, 4096 * DEAL_BYTES));
+			buffer.putInt(MAGIC).putInt(VERSION).putInt(GENERATOR_VERSION).putInt(numDeals).putLong(startSeed).putLong(0L);
+			DealShuffler shuffler = new DealShuffler();
+			for (int deal = 0; deal < numDeals; deal++) {
+				if (buffer.remaining() < DEAL_BYTES)
+					drain(channel, buffer);
+				shuffler.startDeal(startSeed + deal);
+				for (int k = 0; k < DEAL_BYTES; k++)
+					buffer.put((byte) shuffler.dealNext());
+			}
+			drain(channel, buffer);
+		}
+		finally {
+			channel.close();
+		}
+	}
+
+	private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+		buffer.clear();
+	}
+
+	/**
+	 * Open and map the given deal file.
+	 * @param file deal file
+	 * @throws IOException if the file cannot be mapped, is not a deal file of this version, or was made by another
+	 * deal generator
+	 */
+	public DealFile(Path file) throws IOException {
+		channel = FileChannel.open(file, StandardOpenOption.READ);
+		long size = channel.size();
+		ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, HEADER_BYTES));
+		if (size < HEADER_BYTES || header.getInt() != MAGIC || header.getInt() != VERSION) {
+			channel.close();
+			throw new IOException("Not a version " + VERSION + " deal file: " + file);
+		}
+		if (header.getInt() != GENERATOR_VERSION) {
+			channel.close();
+			throw new IOException("Deal file from another deal generator: " + file);
+		}
+		numDeals = header.getInt();
+		startSeed = header.getLong();
+		if (size < HEADER_BYTES + (long) numDeals * DEAL_BYTES) {
+			channel.close();
+			throw new IOException("Truncated deal file: " + file);
+		}
+		deals = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, (long) numDeals * DEAL_BYTES);
+	}
+
+	/**
+	 * Get the number of deals.
+	 * @return the number of deals
+	 */
+	public int getNumDeals() {
+		return numDeals;
+	}
+
+	/**
+	 * Get the seed of the first deal.
+	 * @return the seed of the first deal
+	 */
+	public long getStartSeed() {
+		return startSeed;
+	}
+
+	/**
+	 * Get the seed of the given deal.
+	 * @param deal deal index
+	 * @return the seed of the given deal
+	 */
+	public long getSeed(int deal) {
+		return startSeed + deal;
+	}
+
+	/**
+	 * Get the id of the kth card dealt in the given deal.
+	 * @param deal deal index
+	 * @param k index of card in deal order (0 through 24)
+	 * @return card identification number
+	 */
+	public int getCardId(int deal, int k) {
+		return deals.get(deal * DEAL_BYTES + k);
+	}
+
+	/**
+	 * Copy the card ids of the given deal.
+	 * @param deal deal index
+	 * @param cardIds array in which the DEAL_BYTES card ids are stored in deal order
+	 */
+	public void getDeal(int deal, int[] cardIds) {
+		int offset = deal * DEAL_BYTES;
+		for (int k = 0; k < DEAL_BYTES; k++)
+			cardIds[k] = deals.get(offset + k);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Write a deal file of the given number of deals from the given start seed.
+	 * @param args deal file path, start seed, and number of deals (default: a temporary demonstration file of 1000000
+	 * deals from seed 0, played by the FlushPlayer)
+	 * @throws IOException if the deal file cannot be written or read
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length == 3) {
+			write(Paths.get(args[0]), Long.parseLong(args[1]), Integer.parseInt(args[2]));
+			return;
+		}
+		Path file = Files.createTempFile("pokersquares", ".psqd");
+		long startTime = System.currentTimeMillis();
+		write(file, 0L, 1000000);
+		System.out.printf("Wrote %d bytes in %d ms\n", Files.size(file), System.currentTimeMillis() - startTime);
+		DealFile deals = new DealFile(file);
+		HeadlessPokerSquares game = new HeadlessPokerSquares(new FlushPlayer(), PokerSquaresPointSystem.getBritishPointSystem());
+		startTime = System.currentTimeMillis();
+		System.out.println(game.playSequence(deals));
+		System.out.printf("Played %d deals in %d ms\n", deals.getNumDeals(), System.currentTimeMillis() - startTime);
+		deals.close();
+		Files.delete(file);
+	}
+}
@@ -0,0 +1,76 @@
+/**
+ * DealShuffler - deals the cards of the game with a given seed exactly as {@link PokerSquares#play(long)} does, i.e.
+ * as popped from a full deck (pushed in card id order) after Collections.shuffle with a java.util.Random of that seed.
+ *
+ * The deck is a reused card id array, and java.util.Random's generator and Collections.shuffle's algorithm are
+ * inlined, without atomic updates.  Collections.shuffle swaps each position, from the top of the deck down, with a
+ * random position below it, so the kth step fixes the kth card popped: only the 25 steps that determine the dealt
+ * cards are made.
+ */
+public class DealShuffler {
+
+	private static final int NUM_CARDS = Card.NUM_CARDS; // number of cards in deck
+	private static final long MULTIPLIER = 0x5DEECE66DL; // java.util.Random linear congruential multiplier
+	private static final long ADDEND = 0xBL; // java.util.Random linear congruential addend
+	private static final long MASK = (1L << 48) - 1; // java.util.Random 48-bit state mask
+
+	private final int[] deck = new int[NUM_CARDS]; // reused deck of card ids
+	private long seed; // java.util.Random-compatible generator state
+	private int numDealt; // number of cards dealt from the current deck
+
+	/**
+	 * Reset the deck to card id order and seed the generator as java.util.Random.setSeed(seed) would.
+	 * @param seed deal seed
+	 */
+	public void startDeal(long seed) {
+		for (int i = 0; i < NUM_CARDS; i++)
+			deck[i] = i;
+		this.seed = (seed ^ MULTIPLIER) & MASK;
+		numDealt = 0;
+	}
+
+	/**
+	 * Deal the next card of the current deal.
+	 * @return id of the next card dealt
+	 */
+	public int dealNext() {
+		int i = NUM_CARDS - numDealt++; // Collections.shuffle: swap(list, i - 1, rnd.nextInt(i)) for i = size down to 2
+		int j = nextInt(i);
+		int cardId = deck[j];
+		deck[j] = deck[i - 1];
+		deck[i - 1] = cardId;
+		return cardId;
+	}
+
+	/**
+	 * Deal the given number of cards of the game with the given seed.
+	 * @param seed deal seed
+	 * @param cardIds array in which the dealt card ids are stored in deal order
+	 * @param numCards number of cards to deal
+	 */
+	public void deal(long seed, int[] cardIds, int numCards) {
+		startDeal(seed);
+		for (int k = 0; k < numCards; k++)
+			cardIds[k] = dealNext();
+	}
+
+	/**
+	 * Return java.util.Random.nextInt(bound) of the inlined generator state.
+	 * @param bound upper bound (exclusive)
+	 * @return the value java.util.Random.nextInt(bound) would return
+	 */
+	private int nextInt(int bound) {
+		int r = next31();
+		int m = bound - 1;
+		if ((bound & m) == 0) // power of two
+			return (int) ((bound * (long) r) >> 31);
+		for (int u = r; u - (r = u % bound) + m < 0; u = next31())
+			;
+		return r;
+	}
+
+	private int next31() {
+		seed = (seed * MULTIPLIER + ADDEND) & MASK;
+		return (int) (seed >>> (48 - 31));
+	}
+}
@@ -13,9 +13,16 @@ public class ExpectimaxPlayer implements PokerSquaresPlayer {
     private Card[][] grid = new Card[SIZE][SIZE]; // grid with Card objects or null (for empty positions)
     private PokerSquaresPointSystem system; // point system
     private final int DEPTH_LIMIT = 2;
-    private Card[] cardsInDeck = new Card[NUM_CARDS];
+    private final Card[] allCards = Card.getAllCards(); // cards indexed by card id
+    private BitDeck cardsInDeck = new BitDeck(); // remaining cards
     private int cardsOnGrid = 0;
     private double chanceNodeValue = 0.0;
+    private long nodeCount = 0; // number of grid placements searched in the current getPlay
+    private long leafCount = 0; // number of grids scored in the current getPlay
+    private LineBitboard lines = new LineBitboard(); // row and column state of the search grid with the root card placed
+    private int rootScore = 0; // score of the search grid with the root card placed
+    private int[] placementDeltas = new int[NUM_POS]; // score change of placing the chance card in each cell
+    private SearchMetrics metrics = SearchMetrics.getMetrics(getName()); // search throughput counters
 
     /* (non-Javadoc)
      * @see PokerSquaresPlayer#init()
@@ -26,7 +33,7 @@ public class ExpectimaxPlayer implements PokerSquaresPlayer {
         for (int row = 0; row < SIZE; row++)
             for (int col = 0; col < SIZE; col++)
                 grid[row][col] = null;
-        cardsInDeck = Card.getAllCards();
+        cardsInDeck.reset();
         cardsOnGrid = 0;
     }
 
@@ -43,7 +50,14 @@ public class ExpectimaxPlayer implements PokerSquaresPlayer {
 
         cardsOnGrid++;
 
+        PokerSquaresEvents.Search searchEvent = new PokerSquaresEvents.Search(); // search iteration event (if recording)
+        searchEvent.begin();
+        nodeCount = 0;
+        leafCount = 0;
         int[] bestPosition = depthSearch(card);
+        searchEvent.commit(getName(), "search iteration", nodeCount, 0);
+        metrics.addNodes(nodeCount);
+        metrics.addLeafEvaluations(leafCount);
 
         placeCard(card, bestPosition[0], bestPosition[1], grid); // Place card on main grid
         int[] playPosition = {bestPosition[0], bestPosition[1]};
@@ -69,8 +83,7 @@ public class ExpectimaxPlayer implements PokerSquaresPlayer {
     }
 
     // This method gets hit for every terminal node
-    private double scoreGrid(Card[][] grid, double terminalHighScore){
-        double stateScore = system.getScore(grid);
+    private double scoreGrid(double stateScore, double terminalHighScore){
 
         if(terminalHighScore < stateScore){
             terminalHighScore = stateScore;
@@ -112,15 +125,6 @@ public class ExpectimaxPlayer implements PokerSquaresPlayer {
         return emptySpot;
     }
 
-    private Card[] removeCardFromRemaining(Card card, Card[] remainingCards){
-        int i=0;
-        while(!card.equals(remainingCards[i]) && i < remainingCards.length){
-            i++;
-        }
-        remainingCards[i] = null;
-        return remainingCards;
-    }
-
     private int[] depthSearch(Card card){
 
         Card[][] tempGrid = copyGrid(grid);
@@ -128,7 +132,7 @@ public class ExpectimaxPlayer implements PokerSquaresPlayer {
 //        System.out.println("NEXT PLAY GRID STATE WITH CARD " + card);
 
         // remove current card from remaining cards in deck
-        removeCardFromRemaining(card, cardsInDeck);
+        cardsInDeck.remove(card.getCardId());
 
         int[] rootPosition = new int[2];
         int[] bestSpotFound = findFirstEmptySpot(tempGrid, false);
@@ -136,6 +140,7 @@ public class ExpectimaxPlayer implements PokerSquaresPlayer {
 
         if(DEPTH_LIMIT==1){
             rootPosition = bestSpotFound;
+            prepareLines(tempGrid);
             placeAndScore(card, tempGrid, 1, rootPosition, 0.0);
         }
         else{
@@ -173,18 +178,16 @@ public class ExpectimaxPlayer implements PokerSquaresPlayer {
             }
             else {
                 // play possible next card in each empty position and take best score
+                // (score changes of all positions computed at once from the row and column state)
+                if (card != null) {
+                    system.getPlacementDeltas(card.getCardId(), lines, placementDeltas);
+                }
                 for (int row = 0; row < SIZE; row++) {
                     for (int col = 0; col < SIZE; col++) {
                         if (grid[row][col] == null && card != null) {
-                            placeCard(card, row, col, grid); // MAX NODE
-
-                            // This effects performance so don't use this for real.
-                            // You'll need to lower the number of chance cards or player will run out of time
-//                            system.printGrid(grid);
-//                            System.out.println("");
-
-                            termHighScore = scoreGrid(grid, termHighScore); // MAX VALUE OF TERMING NODE
-                            removeCard(row, col, grid);
+                            nodeCount++; // MAX NODE
+                            termHighScore = scoreGrid(rootScore + placementDeltas[row * SIZE + col], termHighScore); // MAX VALUE OF TERMING NODE
+                            leafCount++;
                         }
                     }
                 }
@@ -193,9 +196,11 @@ public class ExpectimaxPlayer implements PokerSquaresPlayer {
         }
         else{
             placeCard(card, rootPosition[0], rootPosition[1], grid); // place root card: INITIAL MAX NODE
+            prepareLines(grid);
+            nodeCount++;
             currentDepth ++;
-            for (int i = 0; i < cardsInDeck.length; i++) {
-                placeAndScore(cardsInDeck[i], grid, currentDepth, rootPosition, 0.0); // CHANCE NODE for next card picked
+            for (long remaining = cardsInDeck.getRemaining(); remaining != 0; remaining &= remaining - 1) { // remaining cards in id order
+                placeAndScore(allCards[Long.numberOfTrailingZeros(remaining)], grid, currentDepth, rootPosition, 0.0); // CHANCE NODE for next card picked
             }
 
         }
@@ -203,12 +208,10 @@ public class ExpectimaxPlayer implements PokerSquaresPlayer {
     }
 
 
-    private String printRemainingCards(Card[] deck){
-        String cardList = "";
-        for(int i=0; i<deck.length; i++){
-            cardList += deck[i] + ":";
-        }
-        return cardList;
+    // Set the row and column state and score of the grid under which chance cards are placed
+    private void prepareLines(Card[][] grid){
+        lines.set(grid);
+        rootScore = system.getScore(lines);
     }
 
     /* (non-Javadoc)
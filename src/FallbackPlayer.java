@@ -0,0 +1,408 @@
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * FallbackPlayer - a wrapper of any Poker Squares player that answers with a precomputed, constant-time fallback
+ * policy rather than letting the player run out of time or throw.
+ *
+ * PokerSquares scores a timeout, an exception, or an illegal play as ten times the worst hand score, which can cost
+ * more than all other games of a run gain.  The wrapped player is called on its own daemon thread, given the
+ * remaining time less a safety margin (see {@link #setSafetyMillis(long)}), and the wrapper falls back:
+ * <ul>
+ * <li>before the call, if the player's projected latency (that of its previous play, as for players that pace
+ * themselves by an even share of the remaining time) exceeds the time available;</li>
+ * <li>at the deadline, if the call has not returned;</li>
+ * <li>if the call throws or returns an illegal play.</li>
+ * </ul>
+ * Since the player does not see plays it did not choose, the fallback policy plays the rest of the game once it has
+ * answered.  The player plays again from the next game, if it has become idle: whether it is busy is tracked by the
+ * calls themselves, since a timed-out call that ignores interruption (as CPU-bound searches do) keeps running after
+ * it is cancelled.  Waits for the player's init and point system preparation are bounded too; a player still busy
+ * a second after init is called sits out that game, and a player busy at a new point system sits out that point
+ * system.
+ *
+ * The fallback policy is built per point system in {@link #setPointSystem(PokerSquaresPointSystem, long)}: each
+ * card has a precomputed cell preference order, from a layout of suits by column or of rank groups by row, and the
+ * policy plays the first empty cell in that order, or, greedily, the empty cell of greatest immediate score change
+ * (see {@link PokerSquaresPointSystem#getPlacementDeltas(int, LineBitboard, int[])}), breaking ties in that order.
+ * Of these four policies, the one of greatest average score on fixed deals under the point system is chosen.
+ */
+public class FallbackPlayer implements PokerSquaresPlayer {
+
+	private static final int SIZE = PokerSquares.SIZE; // number of rows/columns in square grid
+	private static final int NUM_POS = SIZE * SIZE; // number of positions in square grid
+	private static final int NUM_CARDS = Card.NUM_CARDS; // number of cards in deck
+	private static final int NUM_GROUPS = Card.NUM_SUITS; // number of rank groups, one per row but the overflow row
+	private static final int NUM_LAYOUT_GAMES = 500; // number of fixed deals on which fallback policies are compared
+	private static final long INIT_MILLIS = 1000L; // milliseconds allowed for the wrapped player's init
+	private static final String[] POLICY_NAMES = {"suit columns", "rank rows", "greedy suit columns", "greedy rank rows"};
+
+	private final PokerSquaresPlayer player; // wrapped player
+	private final ExecutorService executor; // single thread to which the wrapped player is confined
+	private volatile Future<?> pending = null; // most recent call of the wrapped player, possibly queued or running
+	private final AtomicBoolean busy = new AtomicBoolean(false); // whether a call of the wrapped player is running (set by the call)
+	private long safetyMillis = 100; // milliseconds of the remaining time kept back from the wrapped player
+	private PokerSquaresPointSystem system; // point system
+	private volatile boolean systemFailed = false; // whether the wrapped player threw while preparing for the point system, or was busy
+	private int[][] preferences = new int[2][NUM_CARDS * NUM_POS]; // cell preference orders by layout, NUM_POS per card id
+	private int policy = 0; // fallback policy: layout index, plus 2 if greedy
+	private LineBitboard lines = new LineBitboard(); // row and column state of the grid
+	private int occupied = 0; // bit r * SIZE + c is set if (r, c) is occupied
+	private int numPlays = 0; // number of cards played into the grid so far
+	private int[] deltas = new int[NUM_POS]; // score change of placing the current card in each cell
+	private boolean fallingBack = false; // whether the fallback policy plays the rest of the game
+	private long lastLatencyNanos = 0; // latency of the wrapped player's previous play in the current game
+	private int numFallbacks = 0; // number of times the fallback policy has taken over a game
+
+	/**
+	 * Create a wrapper that falls back from the given player.
+	 * @param player wrapped player (called only from the wrapper's own thread)
+	 */
+	public FallbackPlayer(PokerSquaresPlayer player) {
+		this.player = player;
+		final String threadName = "PokerSquares " + player.getName();
+		executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, threadName);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		for (int cardId = 0; cardId < NUM_CARDS; cardId++)
+			for (int layout = 0; layout < 2; layout++)
+				setPreferences(cardId, layout);
+	}
+
+	/**
+	 * Set the cell preference order of the given card in the given layout.  Ranks fall into NUM_GROUPS groups of
+	 * consecutive ranks, so that each card has a home cell in the row of its group and the column of its suit.  In
+	 * the suit column layout, the card next prefers the rest of its suit's column, then the last (overflow) column;
+	 * in the rank row layout, the rest of its group's row, then the last row.  Remaining cells follow in row-major
+	 * order.
+	 * @param cardId card id
+	 * @param layout 0 for suit columns, 1 for rank rows
+	 */
+	private void setPreferences(int cardId, int layout) {
+		int suit = cardId / Card.NUM_RANKS, group = cardId % Card.NUM_RANKS * NUM_GROUPS / Card.NUM_RANKS;
+		int[] order = preferences[layout];
+		int offset = cardId * NUM_POS, n = 0;
+		int listed = 0; // bit cell is set if the cell is already in the order
+		int[] firsts = new int[2 * SIZE + 1];
+		int m = 0;
+		firsts[m++] = group * SIZE + suit;
+		for (int i = 0; i < SIZE; i++)
+			firsts[m++] = layout == 0 ? i * SIZE + suit : group * SIZE + i;
+		for (int i = 0; i < SIZE; i++)
+			firsts[m++] = layout == 0 ? i * SIZE + SIZE - 1 : (SIZE - 1) * SIZE + i;
+		for (int cell : firsts)
+			if ((listed & (1 << cell)) == 0) {
+				order[offset + n++] = cell;
+				listed |= 1 << cell;
+			}
+		for (int cell = 0; cell < NUM_POS; cell++)
+			if ((listed & (1 << cell)) == 0)
+				order[offset + n++] = cell;
+	}
+
+	/**
+	 * Set the number of milliseconds of the remaining time kept back from the wrapped player, to absorb garbage
+	 * collection pauses, host contention, and thread handoff.  The default is 100.
+	 * @param safetyMillis safety margin in milliseconds
+	 */
+	public void setSafetyMillis(long safetyMillis) {
+		this.safetyMillis = safetyMillis;
+	}
+
+	/**
+	 * Get the number of times the fallback policy has taken over a game.
+	 * @return the number of fallbacks
+	 */
+	public int getNumFallbacks() {
+		return numFallbacks;
+	}
+
+	/**
+	 * Get the name of the fallback policy chosen for the current point system.
+	 * @return the name of the fallback policy
+	 */
+	public String getFallbackPolicyName() {
+		return POLICY_NAMES[policy];
+	}
+
+	/* (non-Javadoc)
+	 * @see PokerSquaresPlayer#setPointSystem(PokerSquaresPointSystem, long)
+	 */
+	@Override
+	public void setPointSystem(final PokerSquaresPointSystem system, final long millis) {
+		long startTime = System.currentTimeMillis();
+		this.system = system;
+		chooseFallbackPolicy();
+		systemFailed = false;
+		if (isBusy()) {
+			System.err.println(getName() + ": player busy at new point system; fallback policy plays under it");
+			systemFailed = true;
+			return;
+		}
+		final long playerDeadline = startTime + millis - safetyMillis; // end of the player's preparation, shared with the wait below
+		submit(new Callable<Object>() {
+			@Override
+			public Object call() { // (given the time left when the call starts, after building the fallback policy and thread handoff)
+				player.setPointSystem(system, Math.max(0, playerDeadline - System.currentTimeMillis()));
+				return null;
+			}
+		});
+		try {
+			pending.get(Math.max(0, startTime + millis - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			// As the player interface permits, the player may continue preparing; it plays if idle at init.
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			System.err.println("Exception thrown by " + player.getName() + ":");
+			e.getCause().printStackTrace();
+			systemFailed = true;
+		}
+	}
+
+	/**
+	 * Choose the fallback policy of greatest average score over fixed deals under the current point system.
+	 */
+	private void chooseFallbackPolicy() {
+		DealShuffler shuffler = new DealShuffler();
+		int[] cardIds = new int[NUM_POS];
+		long[] totals = new long[POLICY_NAMES.length];
+		for (int game = 0; game < NUM_LAYOUT_GAMES; game++) {
+			shuffler.deal(game, cardIds, NUM_POS);
+			for (policy = 0; policy < POLICY_NAMES.length; policy++) {
+				clearGrid();
+				for (int cardId : cardIds)
+					makePlay(cardId, getFallbackPlay(cardId));
+				totals[policy] += system.getScore(lines);
+			}
+		}
+		policy = 0;
+		for (int i = 1; i < POLICY_NAMES.length; i++)
+			if (totals[i] > totals[policy])
+				policy = i;
+		clearGrid();
+	}
+
+	/* (non-Javadoc)
+	 * @see PokerSquaresPlayer#init()
+	 */
+	@Override
+	public void init() {
+		clearGrid();
+		lastLatencyNanos = 0;
+		fallingBack = systemFailed;
+		long deadline = System.currentTimeMillis() + INIT_MILLIS; // (shared by the wait for idleness and the player's init)
+		if (!fallingBack && !awaitIdle(deadline)) {
+			System.err.println(getName() + ": player still busy; fallback policy plays this game");
+			fallingBack = true;
+			numFallbacks++;
+		}
+		if (!fallingBack) {
+			submit(new Callable<Object>() {
+				@Override
+				public Object call() {
+					player.init();
+					return null;
+				}
+			});
+			try {
+				pending.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+			} catch (TimeoutException e) {
+				pending.cancel(true);
+				fallBack("init out of time");
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				fallBack("interrupted");
+			} catch (ExecutionException e) {
+				fallBack("exception " + e.getCause());
+			}
+		}
+	}
+
+	/**
+	 * Wait until the wrapped player is idle or the given time, whichever comes first.  (E.g. the player may still be
+	 * preparing for the point system when a game's init arrives, if the caller started timing preparation before the
+	 * call reached this wrapper.)
+	 * @param deadline time to stop waiting, in milliseconds
+	 * @return whether the player is idle
+	 */
+	private boolean awaitIdle(long deadline) {
+		while (isBusy()) {
+			long millis = deadline - System.currentTimeMillis();
+			if (millis <= 0)
+				return false;
+			try {
+				if (pending.isDone()) // (a cancelled call may still be running)
+					Thread.sleep(Math.min(millis, 1));
+				else
+					pending.get(millis, TimeUnit.MILLISECONDS);
+			} catch (TimeoutException e) {
+				// (checked again above)
+			} catch (ExecutionException e) {
+				// (outcomes of earlier calls were handled by their callers)
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Submit a call of the wrapped player to its thread, marking the player busy while the call runs.
+	 * @param call call of the wrapped player
+	 * @return the future result of the call
+	 */
+	private <T> Future<T> submit(final Callable<T> call) {
+		Future<T> future = executor.submit(new Callable<T>() {
+			@Override
+			public T call() throws Exception {
+				busy.set(true);
+				try {
+					return call.call();
+				} finally {
+					busy.set(false);
+				}
+			}
+		});
+		pending = future;
+		return future;
+	}
+
+	/**
+	 * Return whether the wrapped player is busy: a call of it is running, or queued.  (A cancelled call reports done
+	 * at once, though it may still be running.)
+	 * @return whether the wrapped player is busy
+	 */
+	private boolean isBusy() {
+		return busy.get() || (pending != null && !pending.isDone());
+	}
+
+	private void clearGrid() {
+		lines.clear();
+		occupied = 0;
+		numPlays = 0;
+	}
+
+	/* (non-Javadoc)
+	 * @see PokerSquaresPlayer#getPlay(Card, long)
+	 */
+	@Override
+	public int[] getPlay(final Card card, long millisRemaining) {
+		long startNanos = System.nanoTime();
+		int cell = -1;
+		if (!fallingBack) {
+			final long playerMillis = millisRemaining - safetyMillis; // time given to the player
+			long availableNanos = playerMillis * 1000000L;
+			if (availableNanos <= 0)
+				fallBack("out of time");
+			else if (numPlays < NUM_POS - 1 && lastLatencyNanos > availableNanos) // (the last play is forced)
+				fallBack(String.format("projected %d ms of %d ms available", lastLatencyNanos / 1000000L, playerMillis));
+			else {
+				Future<int[]> play = submit(new Callable<int[]>() {
+					@Override
+					public int[] call() {
+						return player.getPlay(card, playerMillis);
+					}
+				});
+				try {
+					int[] rowCol = play.get(availableNanos, TimeUnit.NANOSECONDS);
+					lastLatencyNanos = System.nanoTime() - startNanos;
+					if (rowCol != null && rowCol.length == 2 && rowCol[0] >= 0 && rowCol[0] < SIZE && rowCol[1] >= 0 && rowCol[1] < SIZE
+							&& (occupied & (1 << (rowCol[0] * SIZE + rowCol[1]))) == 0)
+						cell = rowCol[0] * SIZE + rowCol[1];
+					else
+						fallBack("illegal play " + Arrays.toString(rowCol));
+				} catch (TimeoutException e) {
+					play.cancel(true);
+					fallBack("out of time");
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					fallBack("interrupted");
+				} catch (ExecutionException e) {
+					fallBack("exception " + e.getCause());
+				}
+			}
+		}
+		if (cell < 0)
+			cell = getFallbackPlay(card.getCardId());
+		makePlay(card.getCardId(), cell);
+		return new int[] {cell / SIZE, cell % SIZE};
+	}
+
+	/**
+	 * Switch to the fallback policy for the rest of the game.
+	 * @param reason reason for the switch
+	 */
+	private void fallBack(String reason) {
+		System.err.printf("%s: %s at play %d; fallback policy plays the rest of the game\n", getName(), reason, numPlays);
+		fallingBack = true;
+		numFallbacks++;
+	}
+
+	/**
+	 * Return the play of the fallback policy for the given card in the current grid.
+	 * @param cardId id of the card to place
+	 * @return row-major index of an empty cell
+	 */
+	private int getFallbackPlay(int cardId) {
+		int[] order = preferences[policy & 1];
+		int offset = cardId * NUM_POS;
+		if (policy < 2) { // first empty cell in preference order
+			for (int i = 0; i < NUM_POS; i++)
+				if ((occupied & (1 << order[offset + i])) == 0)
+					return order[offset + i];
+		}
+		system.getPlacementDeltas(cardId, lines, deltas);
+		int best = -1;
+		for (int i = 0; i < NUM_POS; i++) { // greatest score change, ties in preference order
+			int cell = order[offset + i];
+			if ((occupied & (1 << cell)) == 0 && (best < 0 || deltas[cell] > deltas[best]))
+				best = cell;
+		}
+		return best;
+	}
+
+	private void makePlay(int cardId, int cell) {
+		lines.add(cardId, cell / SIZE, cell % SIZE);
+		occupied |= 1 << cell;
+		numPlays++;
+	}
+
+	/* (non-Javadoc)
+	 * @see PokerSquaresPlayer#getName()
+	 */
+	@Override
+	public String getName() {
+		return "Fallback" + player.getName();
+	}
+
+	/**
+	 * Demonstrate FallbackPlayer play around a GreedyMCPlayer simulating to game end, with the Ameritish point system
+	 * and a game time too short for some of its plays.
+	 * @param args (not used)
+	 */
+	public static void main(String[] args) {
+		PokerSquaresPointSystem system = PokerSquaresPointSystem.getAmeritishPointSystem();
+		System.out.println(system);
+		FallbackPlayer player = new FallbackPlayer(new GreedyMCPlayer(25));
+		PokerSquares game = new PokerSquares(player, system);
+		game.setGameMillis(1000L);
+		game.play(); // play a single game
+		System.out.println("Fallback policy: " + player.getFallbackPolicyName() + "; fallbacks: " + player.getNumFallbacks());
+	}
+
+}
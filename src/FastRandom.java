@@ -0,0 +1,213 @@
+import java.util.Random;
+
+/**
+ * FastRandom - a fast, splittable pseudorandom number generator for simulation-heavy players.
+ *
+ * The generator is xoroshiro128++ (Blackman and Vigna), seeded through SplitMix64 so that any 64-bit seed
+ * (including small consecutive seeds) yields a well-mixed initial state.  Unlike java.util.Random, it keeps its
+ * state in plain fields rather than an AtomicLong, so it must be confined to a single thread.  For parallel
+ * simulation, give each worker its own stream with {@link #split()}, {@link #jump()}, or
+ * {@link #getStream(long, int)}, which derives stream i of a master seed reproducibly.
+ *
+ * FastRandom extends java.util.Random so that it may be plugged in wherever a Random is expected
+ * (e.g. Collections.shuffle), and overrides the methods used in player hot paths.  In particular,
+ * {@link #nextInt(int)} uses Lemire's multiply-shift method, which avoids division in the common case.  This makes
+ * it well suited to sampling an index from the undealt part of a simulation deck.
+ *
+ * Note: The streams produced are not those of java.util.Random.  Game deals are still generated by the engine's
+ * java.util.Random so that deals for a given seed are unchanged.
+ */
+public class FastRandom extends Random {
+
+	private static final long serialVersionUID = 1L;
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L; // SplitMix64 increment
+	private static final long[] JUMP = {0x2bd7a6a6e99c2ddcL, 0x0992ccaf6a6fca05L}; // xoroshiro128++ 2^64 jump polynomial
+	private static long seedUniquifier = 0x5851f42d4c957f2dL; // varied for each default-seeded generator
+
+	private long s0, s1; // xoroshiro128++ state (never both zero)
+
+	/**
+	 * Create a generator with a seed that is very likely to differ from any other default-seeded generator.
+	 */
+	public FastRandom() {
+		this(nextSeedUniquifier() ^ System.nanoTime());
+	}
+
+	/**
+	 * Create a generator with the given seed.
+	 * @param seed generator seed
+	 */
+	public FastRandom(long seed) {
+		super(0L); // (The superclass state is unused.)
+		setSeed(seed);
+	}
+
+	/**
+	 * Create a generator with the given internal state.
+	 * @param s0 first state word
+	 * @param s1 second state word
+	 */
+	private FastRandom(long s0, long s1) {
+		super(0L);
+		this.s0 = s0;
+		this.s1 = s1;
+	}
+
+	private static synchronized long nextSeedUniquifier() {
+		seedUniquifier *= 1181783497276652981L;
+		return seedUniquifier;
+	}
+
+	/**
+	 * Return the generator for stream <code>streamIndex</code> derived from the given master seed.  The same master
+	 * seed and stream index always yield the same stream, and different stream indices yield statistically independent
+	 * streams, so a parallel run with one stream per worker is reproducible.
+	 * @param masterSeed master seed for all streams
+	 * @param streamIndex index of the desired stream (e.g. a worker index)
+	 * @return the generator for the given stream of the given master seed
+	 */
+	public static FastRandom getStream(long masterSeed, int streamIndex) {
+		return new FastRandom(mix64(masterSeed + GOLDEN_GAMMA * (streamIndex + 1L)));
+	}
+
+	/**
+	 * Return the SplitMix64 output function (a strong 64-bit mixer) applied to the given value.
+	 * @param z value to mix
+	 * @return mixed value
+	 */
+	public static long mix64(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.Random#setSeed(long)
+	 */
+	@Override
+	public void setSeed(long seed) {
+		// This is also called by the superclass constructor, before this object's own initialization.
+		long z = seed;
+		s0 = mix64(z += GOLDEN_GAMMA);
+		s1 = mix64(z + GOLDEN_GAMMA);
+		if ((s0 | s1) == 0L) // the all-zero state is a fixed point
+			s1 = GOLDEN_GAMMA;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.Random#nextLong()
+	 */
+	@Override
+	public long nextLong() {
+		final long s0 = this.s0;
+		long s1 = this.s1;
+		final long result = Long.rotateLeft(s0 + s1, 17) + s0;
+		s1 ^= s0;
+		this.s0 = Long.rotateLeft(s0, 49) ^ s1 ^ (s1 << 21);
+		this.s1 = Long.rotateLeft(s1, 28);
+		return result;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.Random#next(int)
+	 */
+	@Override
+	protected int next(int bits) {
+		return (int) (nextLong() >>> (64 - bits));
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.Random#nextInt()
+	 */
+	@Override
+	public int nextInt() {
+		return (int) (nextLong() >>> 32);
+	}
+
+	/**
+	 * Return a uniformly distributed int in [0, bound) using Lemire's nearly divisionless method.  A division is only
+	 * needed on the rare occasions that the first sample falls in the biased region.
+	 * @param bound upper bound (exclusive). Must be positive.
+	 * @return a uniformly distributed int in [0, bound)
+	 */
+	@Override
+	public int nextInt(int bound) {
+		if (bound <= 0)
+			throw new IllegalArgumentException("bound must be positive");
+		long m = (nextLong() >>> 32) * bound;
+		long low = m & 0xFFFFFFFFL;
+		if (low < bound) {
+			long threshold = (0x100000000L - bound) % bound;
+			while (low < threshold) {
+				m = (nextLong() >>> 32) * bound;
+				low = m & 0xFFFFFFFFL;
+			}
+		}
+		return (int) (m >>> 32);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.Random#nextDouble()
+	 */
+	@Override
+	public double nextDouble() {
+		return (nextLong() >>> 11) * 0x1.0p-53;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.Random#nextBoolean()
+	 */
+	@Override
+	public boolean nextBoolean() {
+		return nextLong() < 0L;
+	}
+
+	/**
+	 * Advance this generator by 2^64 steps.  Calling jump() repeatedly on copies of one generator yields up to 2^64
+	 * non-overlapping subsequences of length 2^64, one per worker.
+	 */
+	public void jump() {
+		long t0 = 0L, t1 = 0L;
+		for (long jump : JUMP)
+			for (int b = 0; b < 64; b++) {
+				if ((jump & (1L << b)) != 0) {
+					t0 ^= s0;
+					t1 ^= s1;
+				}
+				nextLong();
+			}
+		s0 = t0;
+		s1 = t1;
+	}
+
+	/**
+	 * Return a copy of this generator in its current state.
+	 * @return a copy of this generator in its current state
+	 */
+	public FastRandom copy() {
+		return new FastRandom(s0, s1);
+	}
+
+	/**
+	 * Return a new generator for another worker, seeded from this generator's output.  This generator advances, so
+	 * successive splits yield different streams.
+	 * @return a new, independently seeded generator
+	 */
+	public FastRandom split() {
+		return new FastRandom(mix64(nextLong()) ^ nextLong());
+	}
+
+	/**
+	 * Demonstrate reproducible per-worker streams derived from a master seed.
+	 * @param args (not used)
+	 */
+	public static void main(String[] args) {
+		for (int stream = 0; stream < 4; stream++) {
+			FastRandom random = getStream(42L, stream);
+			System.out.printf("Stream %d:", stream);
+			for (int i = 0; i < 8; i++)
+				System.out.printf(" %2d", random.nextInt(Card.NUM_CARDS));
+			System.out.println();
+		}
+	}
+}
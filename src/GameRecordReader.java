@@ -0,0 +1,168 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * GameRecordReader - random-access reader of a game record file written by {@link GameRecordWriter}.
+ *
+ * The file is memory-mapped (in chunks of whole records, as a single mapping is limited to 2 GB), so records are read
+ * directly from the page cache without copying, and sequential scans proceed at disk bandwidth.
+ */
+public class GameRecordReader implements Closeable {
+
+	private static final int RECORDS_PER_CHUNK = Integer.MAX_VALUE / GameRecordWriter.RECORD_BYTES; // records per mapping
+
+	private final FileChannel channel; // file channel opened for reading
+	private final MappedByteBuffer[] chunks; // read-only mappings of consecutive record ranges
+	private final int numRecords; // number of complete records
+
+	/**
+	 * Open the given game record file for reading.
+	 * @param file game record file
+	 * @throws IOException if the file cannot be mapped or is not a game record file of this version
+	 */
+	public GameRecordReader(Path file) throws IOException {
+		channel = FileChannel.open(file, StandardOpenOption.READ);
+		long size = channel.size();
+		MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, GameRecordWriter.HEADER_BYTES));
+		if (size < GameRecordWriter.HEADER_BYTES || header.getInt() != GameRecordWriter.MAGIC
+				|| header.getInt() != GameRecordWriter.VERSION || header.getInt() != GameRecordWriter.RECORD_BYTES) {
+			channel.close();
+			throw new IOException("Not a version " + GameRecordWriter.VERSION + " game record file: " + file);
+		}
+		long records = (size - GameRecordWriter.HEADER_BYTES) / GameRecordWriter.RECORD_BYTES;
+		numRecords = (int) Math.min(Integer.MAX_VALUE, records);
+		chunks = new MappedByteBuffer[(numRecords + RECORDS_PER_CHUNK - 1) / RECORDS_PER_CHUNK];
+		for (int i = 0; i < chunks.length; i++) {
+			long first = (long) i * RECORDS_PER_CHUNK;
+			long count = Math.min(RECORDS_PER_CHUNK, numRecords - first);
+			chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+					GameRecordWriter.HEADER_BYTES + first * GameRecordWriter.RECORD_BYTES, count * GameRecordWriter.RECORD_BYTES);
+		}
+	}
+
+	/**
+	 * Get the number of game records.
+	 * @return the number of game records
+	 */
+	public int getNumRecords() {
+		return numRecords;
+	}
+
+	private MappedByteBuffer chunk(int record) {
+		return chunks[record / RECORDS_PER_CHUNK];
+	}
+
+	private int offset(int record, int fieldOffset) {
+		return (record % RECORDS_PER_CHUNK) * GameRecordWriter.RECORD_BYTES + fieldOffset;
+	}
+
+	/**
+	 * Get the deal seed of the given game record.
+	 * @param record record index
+	 * @return deal seed
+	 */
+	public long getSeed(int record) {
+		return chunk(record).getLong(offset(record, GameRecordWriter.SEED_OFFSET));
+	}
+
+	/**
+	 * Get the point system hash (PokerSquaresPointSystem.hashCode()) of the given game record.
+	 * @param record record index
+	 * @return point system hash
+	 */
+	public int getPointSystemHash(int record) {
+		return chunk(record).getInt(offset(record, GameRecordWriter.SYSTEM_OFFSET));
+	}
+
+	/**
+	 * Get the final score of the given game record.
+	 * @param record record index
+	 * @return final score
+	 */
+	public int getScore(int record) {
+		return chunk(record).getInt(offset(record, GameRecordWriter.SCORE_OFFSET));
+	}
+
+	/**
+	 * Get the number of legal plays made in the given game record (25 for a completed game).
+	 * @param record record index
+	 * @return number of legal plays made
+	 */
+	public int getNumPlayed(int record) {
+		return chunk(record).get(offset(record, GameRecordWriter.NUM_PLAYED_OFFSET));
+	}
+
+	/**
+	 * Get the identification number of the card of the given play of the given game record.
+	 * @param record record index
+	 * @param play play index (0 through 24)
+	 * @return card identification number
+	 */
+	public int getCardId(int record, int play) {
+		return chunk(record).get(offset(record, GameRecordWriter.PLAYS_OFFSET + 2 * play));
+	}
+
+	/**
+	 * Get the row-major cell index (row * SIZE + col) of the given play of the given game record.
+	 * @param record record index
+	 * @param play play index (0 through 24)
+	 * @return row-major cell index
+	 */
+	public int getCell(int record, int play) {
+		return chunk(record).get(offset(record, GameRecordWriter.PLAYS_OFFSET + 2 * play + 1));
+	}
+
+	/**
+	 * Get the getPlay latency in microseconds of the given play of the given game record.
+	 * @param record record index
+	 * @param play play index (0 through 24)
+	 * @return getPlay latency in microseconds
+	 */
+	public int getLatencyMicros(int record, int play) {
+		return chunk(record).getInt(offset(record, GameRecordWriter.MICROS_OFFSET + 4 * play));
+	}
+
+	/* (non-Javadoc)
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Demonstrate recording a batch of games and scanning the records.
+	 * @param args (not used)
+	 * @throws IOException if the temporary game record file cannot be written or read
+	 */
+	public static void main(String[] args) throws IOException {
+		Path file = Files.createTempFile("pokersquares", ".psqr");
+		PokerSquaresPointSystem system = PokerSquaresPointSystem.getBritishPointSystem();
+		PokerSquares game = new PokerSquares(new FlushPlayer(), system);
+		GameRecordWriter writer = new GameRecordWriter(file);
+		game.setGameRecordWriter(writer);
+		game.playSequence(1000, 0L, false, 0);
+		writer.close();
+
+		GameRecordReader reader = new GameRecordReader(file);
+		long totalScore = 0, totalMicros = 0;
+		for (int record = 0; record < reader.getNumRecords(); record++) {
+			totalScore += reader.getScore(record);
+			for (int play = 0; play < reader.getNumPlayed(record); play++)
+				totalMicros += reader.getLatencyMicros(record, play);
+		}
+		System.out.printf("%d records (%d bytes), mean score %f, mean play latency %f us\n", reader.getNumRecords(), Files.size(file),
+				(double) totalScore / reader.getNumRecords(), (double) totalMicros / (reader.getNumRecords() * GameRecordWriter.NUM_PLAYS));
+		System.out.printf("First game (seed %d): ", reader.getSeed(0));
+		for (int play = 0; play < GameRecordWriter.NUM_PLAYS; play++)
+			System.out.printf("%s@%d ", Card.getCard(reader.getCardId(0, play)), reader.getCell(0, play));
+		System.out.println();
+		reader.close();
+		Files.delete(file);
+	}
+}
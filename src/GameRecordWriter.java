@@ -0,0 +1,131 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * GameRecordWriter - appends compact, fixed-width binary records of played games to a file.
+ *
+ * A game record file begins with a HEADER_BYTES header (magic number, format version, record size) followed by
+ * RECORD_BYTES-byte records with the following (big-endian) layout:
+ * <pre>
+ *   offset  size  field
+ *        0     8  deal seed
+ *        8     4  point system hash (PokerSquaresPointSystem.hashCode())
+ *       12     4  final score
+ *       16     1  number of legal plays made (25 unless the game ended in a timeout, illegal play or exception)
+ *       17     1  (reserved)
+ *       18    50  25 (card id, row-major cell) byte pairs in play order
+ *       68   100  25 getPlay latencies in microseconds, in play order
+ * </pre>
+ * Unused play entries (after an early end) are zero.  Records are accumulated in a direct buffer and appended with
+ * NIO, and may be read back with a memory-mapped {@link GameRecordReader}.  Writing is synchronized, so a writer may
+ * be shared by games running on several threads.
+ */
+public class GameRecordWriter implements Closeable {
+
+	/**
+	 * game record file magic number ("PSQR")
+	 */
+	public static final int MAGIC = 0x50535152;
+	/**
+	 * game record format version
+	 */
+	public static final int VERSION = 1;
+	/**
+	 * number of bytes in the file header
+	 */
+	public static final int HEADER_BYTES = 16;
+	/**
+	 * number of plays in a game
+	 */
+	public static final int NUM_PLAYS = PokerSquares.SIZE * PokerSquares.SIZE;
+	/**
+	 * number of bytes in each game record
+	 */
+	public static final int RECORD_BYTES = 168;
+	// record field offsets
+	static final int SEED_OFFSET = 0;
+	static final int SYSTEM_OFFSET = 8;
+	static final int SCORE_OFFSET = 12;
+	static final int NUM_PLAYED_OFFSET = 16;
+	static final int PLAYS_OFFSET = 18;
+	static final int MICROS_OFFSET = PLAYS_OFFSET + 2 * NUM_PLAYS;
+
+	private static final int RECORDS_PER_BUFFER = 1024; // records accumulated before each append
+
+	private final FileChannel channel; // file channel opened for appending
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(RECORDS_PER_BUFFER * RECORD_BYTES); // pending records
+
+	/**
+	 * Open the given game record file for appending, creating it (with a header) if it is new or empty.
+	 * @param file game record file
+	 * @throws IOException if the file cannot be opened or is not a game record file of this version
+	 */
+	public GameRecordWriter(Path file) throws IOException {
+		channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.READ);
+		ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+		if (channel.size() == 0) {
+			header.putInt(MAGIC).putInt(VERSION).putInt(RECORD_BYTES).putInt(0).flip();
+			while (header.hasRemaining())
+				channel.write(header);
+		}
+		else {
+			while (header.hasRemaining() && channel.read(header, header.position()) > 0)
+				;
+			header.flip();
+			if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC || header.getInt() != VERSION || header.getInt() != RECORD_BYTES) {
+				channel.close();
+				throw new IOException("Not a version " + VERSION + " game record file: " + file);
+			}
+		}
+		channel.position(channel.size());
+	}
+
+	/**
+	 * Append a game record.
+	 * @param seed deal seed
+	 * @param systemHash point system hash
+	 * @param score final score
+	 * @param numPlayed number of legal plays made
+	 * @param cardIds card identification numbers in play order (at least numPlayed entries)
+	 * @param cells row-major cell indices in play order (at least numPlayed entries)
+	 * @param latencyMicros getPlay latencies in microseconds in play order (at least numPlayed entries)
+	 * @throws IOException if the record cannot be written
+	 */
+	public synchronized void write(long seed, int systemHash, int score, int numPlayed, byte[] cardIds, byte[] cells, int[] latencyMicros) throws IOException {
+		if (buffer.remaining() < RECORD_BYTES)
+			flush();
+		buffer.putLong(seed).putInt(systemHash).putInt(score).put((byte) numPlayed).put((byte) 0);
+		for (int i = 0; i < NUM_PLAYS; i++) {
+			buffer.put(i < numPlayed ? cardIds[i] : 0);
+			buffer.put(i < numPlayed ? cells[i] : 0);
+		}
+		for (int i = 0; i < NUM_PLAYS; i++)
+			buffer.putInt(i < numPlayed ? latencyMicros[i] : 0);
+	}
+
+	/**
+	 * Append all pending records to the file.
+	 * @throws IOException if the records cannot be written
+	 */
+	public synchronized void flush() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+		buffer.clear();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (channel.isOpen()) {
+			flush();
+			channel.close();
+		}
+	}
+}
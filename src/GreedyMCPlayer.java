@@ -1,11 +1,22 @@
 import java.util.ArrayList;
-import java.util.Random;
+import java.util.Arrays;
 
 /**
  * GreedyMCPlayer - a simple, greedy Monte Carlo implementation of the player interface for PokerSquares.
  * For each possible play, continues greedy play with random possible card draws to a given depth limit 
  * (or game end).  Having sampled trajectories for all possible plays, the GreedyMCPlayer then selects the
  * play yielding the best average scoring potential in such Monte Carlo simulation.
+ * Optionally, simulated play is instead by a fast {@link RolloutPolicy} over a compact copy of the game state (see
+ * {@link Rollout}), fast enough to simulate to game end.
+ * 
+ * Variance reduction options (see {@link #setCommonRandomNumbers(boolean)}, {@link #setSampling(int)}, and
+ * {@link #setAntitheticPairs(boolean)}) draw simulated cards from prepared card sequences, so that differences
+ * between plays are less buried in sampling noise.
+ * 
+ * Optionally (see {@link #setStatisticsCache(int)}), simulations are reused across moves: each simulation to game
+ * end is also a sample of the position after its first simulated play, so when that position arises as a play
+ * considered at the next move (the simulated card having been dealt), its cached statistics warm-start the play's
+ * average.
  * 
  * Disclaimer: This example code is not intended as a model of efficiency. (E.g., patterns from Knuth's Dancing Links
  * algorithm (DLX) can provide faster legal move list iteration/deletion/restoration.)  Rather, this example
@@ -18,7 +29,7 @@ public class GreedyMCPlayer implements PokerSquaresPlayer {
 	private final int SIZE = 5; // number of rows/columns in square grid
 	private final int NUM_POS = SIZE * SIZE; // number of positions in square grid
 	private final int NUM_CARDS = Card.NUM_CARDS; // number of cards in deck
-	private Random random = new Random(); // pseudorandom number generator for Monte Carlo simulation 
+	private FastRandom random = new FastRandom(); // pseudorandom number generator for Monte Carlo simulation (thread-confined)
 	private int[] plays = new int[NUM_POS]; // positions of plays so far (index 0 through numPlays - 1) recorded as integers using row-major indices.
 	// row-major indices: play (r, c) is recorded as a single integer r * SIZE + c (See http://en.wikipedia.org/wiki/Row-major_order)
 	// From plays index [numPlays] onward, we maintain a list of yet unplayed positions.
@@ -26,11 +37,54 @@ public class GreedyMCPlayer implements PokerSquaresPlayer {
 	private PokerSquaresPointSystem system; // point system
 	private int depthLimit = 2; // default depth limit for Greedy Monte Carlo (MC) play
 	private Card[][] grid = new Card[SIZE][SIZE]; // grid with Card objects or null (for empty positions)
-	private Card[] simDeck = Card.getAllCards(); // a list of all Cards. As we learn the index of cards in the play deck,
-	                                             // we swap each dealt card to its correct index.  Thus, from index numPlays 
-												 // onward, we maintain a list of undealt cards for MC simulation.
+	private final Card[] allCards = Card.getAllCards(); // cards indexed by card id
+	private BitDeck simDeck = new BitDeck(); // undealt cards for MC simulation. Each play (real or simulated) removes its
+	                                         // card, and each undone play restores it.
 	private int[][] legalPlayLists = new int[NUM_POS][NUM_POS]; // stores legal play lists indexed by numPlays (depth)
+	private LineBitboard lines = new LineBitboard(); // row and column state of the grid, for greedy placement deltas
+	private int[] placementDeltas = new int[NUM_POS]; // score change of placing the simulated card in each cell
+	private int[] bestPlayList = new int[NUM_POS]; // greedy plays of maximum score change
 	// (This avoids constant allocation/deallocation of such lists during the greedy selections of MC simulations.)
+	private SearchMetrics metrics = null; // search throughput counters (looked up at first init)
+	private long simNodes = 0; // number of simulated plays in the current getPlay
+	private long simLeafEvaluations = 0; // number of simulated grid evaluations in the current getPlay
+	private RolloutPolicy rolloutPolicy = null; // fast rollout policy for MC simulation, or null for greedy simulation by grid scoring
+	private Rollout rollout = null; // compact copy of the game state for rollouts (if a rollout policy is given)
+	// variance reduction (see setCommonRandomNumbers, setSampling, and setAntitheticPairs)
+	/**
+	 * sampling of simulated card sequences: each sequence drawn independently
+	 */
+	public static final int INDEPENDENT_SAMPLING = 0;
+	/**
+	 * sampling of simulated card sequences: first-drawn cards cycle through the undealt cards in random order, so that
+	 * each undealt card is drawn first equally often
+	 */
+	public static final int STRATIFIED_SAMPLING = 1;
+	/**
+	 * sampling of simulated card sequences: successive sequences are successive blocks of a random permutation of the
+	 * undealt cards, so that no card is drawn again until all have been drawn
+	 */
+	public static final int SAMPLING_WITHOUT_REPLACEMENT = 2;
+	private boolean commonRandomNumbers = false; // whether all plays are evaluated on the same simulated card sequences
+	private boolean antitheticPairs = false; // whether each simulated card sequence is paired with one of cards it leaves undrawn
+	private int sampling = INDEPENDENT_SAMPLING; // sampling of simulated card sequences
+	private int[] simOrder = new int[NUM_CARDS]; // undealt card ids (other than the card to play), permuted to draw sequences
+	private int simOrderSize = 0; // number of undealt card ids in simOrder
+	private int simOrderFront = 0; // start of the undrawn block of simOrder (sampling without replacement)
+	private int simOrderBack = 0; // end of the undrawn block of simOrder (sampling without replacement)
+	private int[] strata = new int[NUM_CARDS]; // first-drawn card ids in stratum order (stratified sampling)
+	private int strataIndex = 0; // index of the next stratum
+	private int[][] simSequences = new int[2][NUM_POS]; // simulated card sequence and its antithetic partner
+	private int[] simSequence = null; // card sequence of the current simulation, or null to draw cards at random
+	private int simDraws = 0; // number of cards drawn from simSequence in the current simulation
+	private double[] playValues = new double[NUM_POS]; // average simulated score of each play considered in the last getPlay
+	// simulation reuse across moves (see setStatisticsCache)
+	private StatisticsCache cache = null; // simulation statistics by position after the first simulated play, or null if not reused
+	private long hash = 0; // Zobrist hash of the grid (see StatisticsCache#getKey)
+	private long[] cachedTotals = new long[NUM_POS]; // reused simulated score total of each play considered
+	private int[] cachedCounts = new int[NUM_POS]; // number of reused simulations of each play considered
+	private long[] firstTotals = null; // simulated score totals of this move by play, then first simulated card and cell
+	private int[] firstCounts = null; // numbers of simulations of this move by play, then first simulated card and cell
 
 	/**
 	 * Create a Greedy Monte Carlo player that simulates greedy play to depth 2.
@@ -46,6 +100,31 @@ public class GreedyMCPlayer implements PokerSquaresPlayer {
 		this.depthLimit = depthLimit;
 	}
 	
+	/**
+	 * Create a Greedy Monte Carlo player that simulates greedy play to a given depth limit, drawing simulated cards
+	 * and breaking ties with the given generator.  For reproducible parallel runs, give each player its own stream,
+	 * e.g. <code>FastRandom.getStream(masterSeed, workerIndex)</code>.
+	 * @param depthLimit depth limit for random greedy simulated play
+	 * @param random pseudorandom number generator for Monte Carlo simulation (not to be shared between threads)
+	 */
+	public GreedyMCPlayer(int depthLimit, FastRandom random) {
+		this.depthLimit = depthLimit;
+		this.random = random;
+	}
+	
+	/**
+	 * Create a Monte Carlo player that simulates play by the given fast rollout policy to a given depth limit (e.g.
+	 * 25 for simulation to game end), drawing simulated cards and breaking ties with the given generator.
+	 * @param depthLimit depth limit for simulated play
+	 * @param rolloutPolicy rollout policy for simulated play (not to be shared between threads)
+	 * @param random pseudorandom number generator for Monte Carlo simulation (not to be shared between threads)
+	 */
+	public GreedyMCPlayer(int depthLimit, RolloutPolicy rolloutPolicy, FastRandom random) {
+		this.depthLimit = depthLimit;
+		this.rolloutPolicy = rolloutPolicy;
+		this.random = random;
+	}
+	
 	/* (non-Javadoc)
 	 * @see PokerSquaresPlayer#init()
 	 */
@@ -55,11 +134,18 @@ public class GreedyMCPlayer implements PokerSquaresPlayer {
 		for (int row = 0; row < SIZE; row++)
 			for (int col = 0; col < SIZE; col++)
 				grid[row][col] = null;
-		// reset numPlays
+		// reset numPlays and the undealt cards
 		numPlays = 0;
+		hash = 0;
+		simDeck.reset();
+		lines.clear();
+		if (rollout != null)
+			rollout.clear();
 		// (re)initialize list of play positions (row-major ordering)
 		for (int i = 0; i < NUM_POS; i++)
 			plays[i] = i;
+		if (metrics == null)
+			metrics = SearchMetrics.getMetrics(getName());
 	}
 
 	/* (non-Javadoc)
@@ -78,14 +164,6 @@ public class GreedyMCPlayer implements PokerSquaresPlayer {
 		 *     average score is chosen (breaking ties randomly).   
 		 */
 		
-		// match simDeck to actual play event; in this way, all indices forward from the card contain a list of 
-		//   undealt Cards in some permutation.
-		int cardIndex = numPlays;
-		while (!card.equals(simDeck[cardIndex]))
-			cardIndex++;
-		simDeck[cardIndex] = simDeck[numPlays];
-		simDeck[numPlays] = card;
-		
 		if (numPlays < 24) { // not the forced last play
 			// compute average time per move evaluation
 			int remainingPlays = NUM_POS - numPlays; // ignores triviality of last play to keep a conservative margin for game completion
@@ -95,21 +173,50 @@ public class GreedyMCPlayer implements PokerSquaresPlayer {
 			System.arraycopy(plays, numPlays, legalPlayLists[numPlays], 0, remainingPlays);
 			double maxAverageScore = Double.NEGATIVE_INFINITY; // maximum average score found for moves so far
 			ArrayList<Integer> bestPlays = new ArrayList<Integer>(); // all plays yielding the maximum average score 
+			long totalSimCount = 0;
+			simNodes = 0;
+			simLeafEvaluations = 0;
+			lookUpPlays(card, remainingPlays);
+			if (commonRandomNumbers) // evaluate all plays on each simulated card sequence in turn
+				totalSimCount = simCommonSequences(card, remainingPlays, System.currentTimeMillis() + millisPerMoveEval * remainingPlays);
+			else { // evaluate each play on its own simulations in turn
+				for (int i = 0; i < remainingPlays; i++) { // for each legal play position
+					int play = legalPlayLists[numPlays][i];
+					long startTime = System.currentTimeMillis();
+					long endTime = startTime + millisPerMoveEval; // compute when MC simulations should end
+					PokerSquaresEvents.Search searchEvent = new PokerSquaresEvents.Search(); // simulation batch event (if recording)
+					searchEvent.begin();
+					boolean sequenced = antitheticPairs || sampling != INDEPENDENT_SAMPLING; // whether simulations draw prepared card sequences
+					if (sequenced)
+						prepareSequences(card);
+					makePlay(card, play / SIZE, play % SIZE);  // play the card at the empty position
+					int simCount = 0;
+					int scoreTotal = 0;
+					do { // perform as many MC simulations as possible through the allotted time (at least one, for small budgets)
+						// Perform a Monte Carlo simulation of greedy play to the depth limit or game end, whichever comes first.
+						if (sequenced) {
+							nextSequences(Math.min(depthLimit, NUM_POS - numPlays));
+							simSequence = simSequences[0];
+							if (antitheticPairs) {
+								scoreTotal += simulate();
+								simCount++;
+								simSequence = simSequences[1];
+							}
+						}
+						scoreTotal += simulate();  // accumulate MC simulation scores
+						simCount++; // increment count of MC simulations
+					} while (System.currentTimeMillis() < endTime);
+					simSequence = null;
+					undoPlay(); // undo the play under evaluation
+					searchEvent.commit(getName(), "simulation batch", 0, simCount);
+					totalSimCount += simCount;
+					playValues[play] = (double) (scoreTotal + cachedTotals[play]) / (simCount + cachedCounts[play]);
+				}
+			}
 			for (int i = 0; i < remainingPlays; i++) { // for each legal play position
 				int play = legalPlayLists[numPlays][i];
-				long startTime = System.currentTimeMillis();
-				long endTime = startTime + millisPerMoveEval; // compute when MC simulations should end
-				makePlay(card, play / SIZE, play % SIZE);  // play the card at the empty position
-				int simCount = 0;
-				int scoreTotal = 0;
-				while (System.currentTimeMillis() < endTime) { // perform as many MC simulations as possible through the allotted time
-					// Perform a Monte Carlo simulation of greedy play to the depth limit or game end, whichever comes first.
-					scoreTotal += simGreedyPlay(depthLimit);  // accumulate MC simulation scores
-					simCount++; // increment count of MC simulations
-				}
-				undoPlay(); // undo the play under evaluation
 				// update (if necessary) the maximum average score and the list of best plays
-				double averageScore = (double) scoreTotal / simCount;
+				double averageScore = playValues[play];
 				if (averageScore >= maxAverageScore) {
 					if (averageScore > maxAverageScore)
 						bestPlays.clear();
@@ -118,6 +225,11 @@ public class GreedyMCPlayer implements PokerSquaresPlayer {
 				}
 			}
 			int bestPlay = bestPlays.get(random.nextInt(bestPlays.size())); // choose a best play (breaking ties randomly)
+			if (cache != null && depthLimit >= NUM_POS - numPlays - 1)
+				cacheStatistics(card, bestPlay);
+			metrics.addSimulations(totalSimCount);
+			metrics.addNodes(simNodes);
+			metrics.addLeafEvaluations(simLeafEvaluations);
 			// update our list of plays, recording the chosen play in its sequential position; all onward from numPlays are empty positions
 			int bestPlayIndex = numPlays;
 			while (plays[bestPlayIndex] != bestPlay)
@@ -130,64 +242,343 @@ public class GreedyMCPlayer implements PokerSquaresPlayer {
 		return playPos; // return the chosen play
 	}
 
+	/**
+	 * Evaluate all legal plays of the given card on common simulated card sequences: each sequence (and its antithetic
+	 * partner, if any) is simulated after every play before the next is drawn, until the given time.  Differences
+	 * between plays are then not confounded by differences between their sampled futures.  Average scores are stored in
+	 * playValues.
+	 * @param card card to play
+	 * @param remainingPlays number of legal plays (in legalPlayLists[numPlays])
+	 * @param endTime time at which simulation ends (after at least one sequence)
+	 * @return number of simulations performed
+	 */
+	private long simCommonSequences(Card card, int remainingPlays, long endTime) {
+		PokerSquaresEvents.Search searchEvent = new PokerSquaresEvents.Search(); // simulation rounds event (if recording)
+		searchEvent.begin();
+		prepareSequences(card);
+		int depth = Math.min(depthLimit, NUM_POS - numPlays - 1); // simulated plays after the play under evaluation
+		long[] scoreTotals = new long[remainingPlays];
+		int numSequences = 0;
+		do {
+			nextSequences(depth);
+			for (int i = 0; i < remainingPlays; i++) {
+				int play = legalPlayLists[numPlays][i];
+				makePlay(card, play / SIZE, play % SIZE);
+				simSequence = simSequences[0];
+				scoreTotals[i] += simulate();
+				if (antitheticPairs) {
+					simSequence = simSequences[1];
+					scoreTotals[i] += simulate();
+				}
+				undoPlay();
+			}
+			numSequences += antitheticPairs ? 2 : 1;
+		} while (System.currentTimeMillis() < endTime);
+		simSequence = null;
+		for (int i = 0; i < remainingPlays; i++) {
+			int play = legalPlayLists[numPlays][i];
+			playValues[play] = (double) (scoreTotals[i] + cachedTotals[play]) / (numSequences + cachedCounts[play]);
+		}
+		long simCount = (long) numSequences * remainingPlays;
+		searchEvent.commit(getName(), "simulation rounds", 0, simCount);
+		return simCount;
+	}
+
+	/**
+	 * Look up the cached statistics of each legal play of the given card into cachedTotals and cachedCounts (zero if
+	 * none), and clear this move's statistics by first simulated play.  Statistics are only looked up if the
+	 * simulations of the plays reach game end, as all cached simulations do.
+	 * @param card card to play
+	 * @param remainingPlays number of legal plays (in legalPlayLists[numPlays])
+	 */
+	private void lookUpPlays(Card card, int remainingPlays) {
+		boolean reused = cache != null && depthLimit >= NUM_POS - numPlays - 1;
+		int hits = 0;
+		for (int i = 0; i < remainingPlays; i++) {
+			int play = legalPlayLists[numPlays][i];
+			if (reused) {
+				Arrays.fill(firstTotals, play * NUM_CARDS * NUM_POS, (play + 1) * NUM_CARDS * NUM_POS, 0L);
+				Arrays.fill(firstCounts, play * NUM_CARDS * NUM_POS, (play + 1) * NUM_CARDS * NUM_POS, 0);
+			}
+			int slot = reused ? cache.find(hash ^ StatisticsCache.getKey(card.getCardId(), play)) : -1;
+			cachedTotals[play] = slot < 0 ? 0 : cache.getScoreTotal(slot);
+			cachedCounts[play] = slot < 0 ? 0 : cache.getCount(slot);
+			if (slot >= 0)
+				hits++;
+		}
+		if (reused)
+			metrics.addCacheLookups(hits, remainingPlays - hits);
+	}
+
+	/**
+	 * Cache this move's statistics of the simulations of the chosen play by the position after their first simulated
+	 * play: the positions among which the next move chooses.
+	 * @param card card to play
+	 * @param play chosen play
+	 */
+	private void cacheStatistics(Card card, int play) {
+		cache.nextGeneration();
+		long position = hash ^ StatisticsCache.getKey(card.getCardId(), play);
+		int start = play * NUM_CARDS * NUM_POS;
+		for (int i = 0; i < NUM_CARDS * NUM_POS; i++) // (i = cardId * NUM_POS + cell)
+			if (firstCounts[start + i] > 0)
+				cache.add(position ^ StatisticsCache.getKey(i / NUM_POS, i % NUM_POS), firstTotals[start + i], firstCounts[start + i]);
+	}
+
+	/**
+	 * Record the score of a simulation to game end from the play under evaluation, by its first simulated card and
+	 * cell.
+	 * @param cardId id of the first simulated card
+	 * @param cell cell of the first simulated card
+	 * @param score resulting grid score
+	 */
+	private void recordFirstPlay(int cardId, int cell, int score) {
+		int i = (plays[numPlays - 1] * NUM_CARDS + cardId) * NUM_POS + cell; // (plays[numPlays - 1] is the play under evaluation)
+		firstTotals[i] += score;
+		firstCounts[i]++;
+	}
+
+	/**
+	 * Perform one Monte Carlo simulation from the current play, by greedy play or the rollout policy.
+	 * @return resulting grid score
+	 */
+	private int simulate() {
+		return rolloutPolicy == null ? simGreedyPlay(depthLimit) : simRollout(depthLimit);
+	}
+
+	/**
+	 * Prepare to draw simulated card sequences of the undealt cards other than the given card to play.
+	 * @param card card to play
+	 */
+	private void prepareSequences(Card card) {
+		simOrderSize = 0;
+		for (long remaining = simDeck.getRemaining() & ~(1L << card.getCardId()); remaining != 0; remaining &= remaining - 1)
+			simOrder[simOrderSize++] = Long.numberOfTrailingZeros(remaining);
+		simOrderFront = simOrderBack = 0; // (to be shuffled before the first block)
+		System.arraycopy(simOrder, 0, strata, 0, simOrderSize);
+		strataIndex = simOrderSize; // (to be shuffled before the first stratum)
+	}
+
+	/**
+	 * Draw the next simulated card sequence of the given length into simSequences[0] and, with antithetic pairs, its
+	 * partner into simSequences[1].  The partner is drawn from the cards the sequence leaves undrawn.
+	 * @param depth sequence length
+	 */
+	private void nextSequences(int depth) {
+		int n = simOrderSize;
+		if (sampling == SAMPLING_WITHOUT_REPLACEMENT) {
+			if (simOrderBack - simOrderFront < (antitheticPairs ? 2 * depth : depth)) { // start a new permutation
+				shuffle(simOrder, n);
+				simOrderFront = 0;
+				simOrderBack = n;
+			}
+			for (int i = 0; i < depth; i++)
+				simSequences[0][i] = simOrder[simOrderFront++];
+			if (antitheticPairs)
+				for (int i = 0; i < depth; i++)
+					simSequences[1][i] = simOrder[--simOrderBack];
+			return;
+		}
+		int start = 0;
+		if (sampling == STRATIFIED_SAMPLING && depth > 0) { // move the next stratum's card to the front
+			if (strataIndex == n) {
+				shuffle(strata, n);
+				strataIndex = 0;
+			}
+			int first = strata[strataIndex++];
+			int j = 0;
+			while (simOrder[j] != first)
+				j++;
+			simOrder[j] = simOrder[0];
+			simOrder[0] = first;
+			simSequences[0][0] = first;
+			start = 1;
+		}
+		for (int i = start; i < depth; i++) { // partial Fisher-Yates shuffle from the front
+			int j = i + random.nextInt(n - i);
+			int cardId = simOrder[j];
+			simOrder[j] = simOrder[i];
+			simOrder[i] = cardId;
+			simSequences[0][i] = cardId;
+		}
+		if (antitheticPairs)
+			for (int i = 0; i < depth; i++) { // partial Fisher-Yates shuffle from the back, of the cards left undrawn
+				int j = depth + random.nextInt(n - depth - i);
+				int cardId = simOrder[j];
+				simOrder[j] = simOrder[n - 1 - i];
+				simOrder[n - 1 - i] = cardId;
+				simSequences[1][i] = cardId;
+			}
+	}
+
+	/**
+	 * Randomly permute the first n entries of the given array.
+	 * @param a array
+	 * @param n number of entries to permute
+	 */
+	private void shuffle(int[] a, int n) {
+		for (int i = n - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int tmp = a[i];
+			a[i] = a[j];
+			a[j] = tmp;
+		}
+	}
+
+	/**
+	 * Draw the id of the next simulated card: the next card of the current card sequence, if any, or else a uniformly
+	 * random undealt card.
+	 * @return the id of the drawn card
+	 */
+	private int nextSimCardId() {
+		return simSequence == null ? simDeck.sample(random) : simSequence[simDraws++];
+	}
+
 	/**
 	 * From the chosen play, perform simulated Card draws and greedy placement (depthLimit) iterations forward 
 	 * and return the resulting grid score.
 	 * @param depthLimit - how many simulated greedy plays to perform
 	 * @return resulting grid score after greedy MC simulation to given depthLimit
 	 */
-	private int simGreedyPlay(int depthLimit) {
+	int simGreedyPlay(int depthLimit) { // (package-private for PokerSquaresBenchmark)
 		if (depthLimit == 0) { // with zero depth limit, return current score
-			return system.getScore(grid);
+			simLeafEvaluations++;
+			return system.getScore(lines);
 		}
 		else { // up to the non-zero depth limit or to game end, iteratively make the given number of greedy plays o
-			int score = Integer.MIN_VALUE;
+			int score = system.getScore(lines); // score of the current grid
 			int maxScore = Integer.MIN_VALUE;
 			int depth = Math.min(depthLimit, NUM_POS - numPlays); // compute real depth limit, taking into account game end
+			boolean cached = cache != null && depth > 0 && depth == NUM_POS - numPlays; // (only simulations to game end are reused)
+			int firstCardId = 0, firstPlay = 0; // first simulated card and its play
+			simDraws = 0;
 			for (int d = 0; d < depth; d++) {
 				// generate a random card draw
-				int c = random.nextInt(NUM_CARDS - numPlays) + numPlays;
-				Card card = simDeck[c];
-				// iterate through legal plays and choose the best greedy play (see similar approach in getPlay)
+				Card card = allCards[nextSimCardId()];
+				// iterate through legal plays and choose the best greedy play (see similar approach in getPlay),
+				// by the score change of each placement, all computed in one pass over the rows and columns
 				int remainingPlays = NUM_POS - numPlays;
-				System.arraycopy(plays, numPlays, legalPlayLists[numPlays], 0, remainingPlays);
-				maxScore = Integer.MIN_VALUE;
-				ArrayList<Integer> bestPlays = new ArrayList<Integer>();
-				for (int i = 0; i < remainingPlays; i++) {
-					int play = legalPlayLists[numPlays][i];
-					makePlay(card, play / SIZE, play % SIZE);
-					score = system.getScore(grid);
-					if (score >= maxScore) {
-						if (score > maxScore)
-							bestPlays.clear();
-						bestPlays.add(play);
-						maxScore = score;
+				system.getPlacementDeltas(card.getCardId(), lines, placementDeltas);
+				int maxDelta = Integer.MIN_VALUE;
+				int numBestPlays = 0;
+				simNodes += remainingPlays + 1;
+				simLeafEvaluations += remainingPlays;
+				for (int i = numPlays; i < NUM_POS; i++) {
+					int play = plays[i];
+					int delta = placementDeltas[play];
+					if (delta >= maxDelta) {
+						if (delta > maxDelta)
+							numBestPlays = 0;
+						bestPlayList[numBestPlays++] = play;
+						maxDelta = delta;
 					}
-					undoPlay();
 				}
-				int bestPlay = bestPlays.get(random.nextInt(bestPlays.size()));
+				int bestPlay = bestPlayList[random.nextInt(numBestPlays)];
 				makePlay(card, bestPlay / SIZE, bestPlay % SIZE);
+				if (d == 0) {
+					firstCardId = card.getCardId();
+					firstPlay = bestPlay;
+				}
+				score += maxDelta;
+				maxScore = score;
 			}
 			// At this point, the last maxScore value is the end value of this Monte Carlo situation.
 			// Undo MC plays.
 			for (int d = 0; d < depth; d++) {
 				undoPlay();
 			}
+			if (cached)
+				recordFirstPlay(firstCardId, firstPlay, maxScore);
 			return maxScore;
 		}
 	}
 	
+	/**
+	 * From the chosen play, perform simulated Card draws and placements by the rollout policy to the depth limit (or game
+	 * end) and return the resulting grid score.
+	 * @param depthLimit - how many simulated plays to perform
+	 * @return resulting grid score after rollout to given depthLimit
+	 */
+	int simRollout(int depthLimit) { // (package-private for PokerSquaresBenchmark)
+		long startPlies = rollout.getNumPlies();
+		int depth = Math.min(depthLimit, NUM_POS - numPlays);
+		int score;
+		if (cache != null && depth > 0 && depth == NUM_POS - numPlays) { // make the first play here, to record the simulation by it
+			int cardId = simSequence == null ? simDeck.sample(random) : simSequence[0];
+			int cell = rolloutPolicy.getPlay(rollout, cardId);
+			rollout.makePlay(cardId, cell);
+			score = simSequence == null ? rollout.play(rolloutPolicy, random, depth - 1) : rollout.play(rolloutPolicy, simSequence, 1, depth - 1);
+			rollout.undoPlay();
+			recordFirstPlay(cardId, cell, score);
+			simNodes++;
+		}
+		else
+			score = simSequence == null ? rollout.play(rolloutPolicy, random, depthLimit) : rollout.play(rolloutPolicy, simSequence, depthLimit);
+		long plies = rollout.getNumPlies() - startPlies;
+		simNodes += plies;
+		simLeafEvaluations += 1;
+		return score;
+	}
+	
+	/**
+	 * Set whether all plays are evaluated on common simulated card sequences, interleaving their simulations, rather
+	 * than each on its own (default: false).
+	 * @param commonRandomNumbers whether to use common random numbers
+	 */
+	public void setCommonRandomNumbers(boolean commonRandomNumbers) {
+		this.commonRandomNumbers = commonRandomNumbers;
+	}
+
+	/**
+	 * Set the sampling of simulated card sequences (default: INDEPENDENT_SAMPLING).
+	 * @param sampling INDEPENDENT_SAMPLING, STRATIFIED_SAMPLING, or SAMPLING_WITHOUT_REPLACEMENT
+	 */
+	public void setSampling(int sampling) {
+		this.sampling = sampling;
+	}
+
+	/**
+	 * Set whether each simulated card sequence is paired with an antithetic sequence, drawn from the cards it leaves
+	 * undrawn (default: false).
+	 * @param antitheticPairs whether to simulate antithetic pairs
+	 */
+	public void setAntitheticPairs(boolean antitheticPairs) {
+		this.antitheticPairs = antitheticPairs;
+	}
+
+	/**
+	 * Set the capacity of the cache of simulation statistics reused across moves, or 0 not to reuse simulations
+	 * (default: 0).  Only simulations to game end are cached and reused, since only their horizon matches that of the
+	 * next move's simulations; reuse thus needs a depth limit reaching game end (e.g. 25), or applies only to the last
+	 * moves.
+	 * @param capacity number of cached positions (rounded up to a power of two), or 0
+	 */
+	public void setStatisticsCache(int capacity) {
+		cache = capacity > 0 ? new StatisticsCache(capacity) : null;
+		firstTotals = capacity > 0 ? new long[NUM_POS * NUM_CARDS * NUM_POS] : null;
+		firstCounts = capacity > 0 ? new int[NUM_POS * NUM_CARDS * NUM_POS] : null;
+	}
+
+	/**
+	 * Get the average simulated score of the given play in the last getPlay call (that was not the forced last play).
+	 * @param play row-major index of a play considered
+	 * @return the average simulated score of the play
+	 */
+	double getPlayValue(int play) { // (package-private for PokerSquaresBenchmark)
+		return playValues[play];
+	}
+
 	public void makePlay(Card card, int row, int col) {
-		// match simDeck to event
-		int cardIndex = numPlays;
-		while (!card.equals(simDeck[cardIndex]))
-			cardIndex++;
-		simDeck[cardIndex] = simDeck[numPlays];
-		simDeck[numPlays] = card;
+		// remove the card from the undealt cards
+		simDeck.remove(card.getCardId());
+		if (rollout != null)
+			rollout.makePlay(card.getCardId(), row * SIZE + col);
 		
 		// update plays to reflect chosen play in sequence
 		grid[row][col] = card;
+		lines.add(card.getCardId(), row, col);
 		int play = row * SIZE + col;
+		hash ^= StatisticsCache.getKey(card.getCardId(), play);
 		int j = 0;
 		while (plays[j] != play)
 			j++;
@@ -201,7 +592,12 @@ public class GreedyMCPlayer implements PokerSquaresPlayer {
 	public void undoPlay() { // undo the previous play
 		numPlays--;
 		int play = plays[numPlays];
-		grid[play / SIZE][play % SIZE] = null;	
+		lines.remove(grid[play / SIZE][play % SIZE].getCardId(), play / SIZE, play % SIZE);
+		hash ^= StatisticsCache.getKey(grid[play / SIZE][play % SIZE].getCardId(), play);
+		grid[play / SIZE][play % SIZE] = null;
+		simDeck.restore();
+		if (rollout != null)
+			rollout.undoPlay();
 	}
 
 	/* (non-Javadoc)
@@ -210,6 +606,12 @@ public class GreedyMCPlayer implements PokerSquaresPlayer {
 	@Override
 	public void setPointSystem(PokerSquaresPointSystem system, long millis) {
 		this.system = system;
+		if (cache != null)
+			cache.clear();
+		if (rolloutPolicy != null) {
+			rolloutPolicy.setPointSystem(system);
+			rollout = new Rollout(system);
+		}
 	}
 
 	/* (non-Javadoc)
@@ -217,7 +619,7 @@ public class GreedyMCPlayer implements PokerSquaresPlayer {
 	 */
 	@Override
 	public String getName() {
-		return "GreedyMCPlayerDepth" + depthLimit;
+		return rolloutPolicy == null ? "GreedyMCPlayerDepth" + depthLimit : "GreedyMCPlayer" + rolloutPolicy.getName() + "Depth" + depthLimit;
 	}
 
 	/**
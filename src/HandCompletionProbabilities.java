@@ -0,0 +1,336 @@
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * HandCompletionProbabilities - exact probability distributions over Poker hand classes of partial lines completed
+ * with random remaining cards, for accurate line potential at table-lookup cost.
+ *
+ * Given a partial line (0 to 4 cards) and the set of remaining cards, the distribution of the line's hand class after
+ * k more cards are drawn uniformly at random (without replacement) from the remaining cards is computed from rank and
+ * suit counts rather than by enumerating draws:
+ * <ul>
+ * <li>Draws are grouped by their rank count vectors (x_0, ..., x_12) with sum k.  A vector occurs in the product over
+ * ranks r of C(remaining_r, x_r) draws, where remaining_r is the number of remaining cards of rank r, and determines
+ * the hand class of the line apart from flushes.</li>
+ * <li>Flushes are only possible when the completed line has 5 cards and the line so far is of at most one suit; draws
+ * completing a flush are then exactly the sets of k distinct remaining ranks of that suit, each counted once, whose
+ * classes are moved from their non-flush to their flush class.</li>
+ * </ul>
+ * Lines with no cards to draw have their own class with certainty, and are not cached.  Other results are cached
+ * (least recently used first out) by an abstracted key: the line's packed rank counts, the
+ * remaining count of each rank, and, only where flushes are possible, the remaining ranks of the line's suit (or the
+ * sorted remaining ranks of all suits for an empty line), so that positions differing only in irrelevant suits share
+ * entries.
+ *
+ * Cards are given as bits of a long: card id c = suit * 13 + rank (see {@link Card#getCardId()}) is bit c.  Objects
+ * of this class are not thread-safe; give each player its own.
+ */
+public class HandCompletionProbabilities {
+
+	private static final int NUM_RANKS = Card.NUM_RANKS; // number of ranks
+	private static final int NUM_SUITS = Card.NUM_SUITS; // number of suits
+	private static final int HAND_SIZE = PokerSquares.SIZE; // number of cards in a complete line
+	private static final int SUIT_RANKS = (1 << NUM_RANKS) - 1; // mask of all ranks of one suit
+	private static final int TWO_SUITS = 3; // a suit mask that rules out flushes
+	private static final long[][] BINOMIALS = new long[NUM_SUITS + 1][NUM_SUITS + 1]; // C(n, k) for n, k <= NUM_SUITS
+	private static final long[][] DRAWS = new long[Card.NUM_CARDS + 1][HAND_SIZE + 1]; // C(n, k) for n <= 52, k <= 5
+	private static final double[][] CERTAIN = new double[PokerHand.NUM_HANDS][PokerHand.NUM_HANDS]; // point distributions by hand id
+
+	static {
+		for (int n = 0; n <= Card.NUM_CARDS; n++)
+			for (int k = 0; k <= HAND_SIZE; k++)
+				DRAWS[n][k] = k == 0 ? 1 : n == 0 ? 0 : DRAWS[n - 1][k - 1] + DRAWS[n - 1][k];
+		for (int n = 0; n <= NUM_SUITS; n++)
+			for (int k = 0; k <= NUM_SUITS; k++)
+				BINOMIALS[n][k] = DRAWS[n][k];
+		for (int id = 0; id < PokerHand.NUM_HANDS; id++)
+			CERTAIN[id][id] = 1.0;
+	}
+
+	/**
+	 * Abstracted cache key of a line completion.
+	 */
+	private static final class Key {
+		private final long lineRankCounts; // packed rank counts of the line
+		private final long remainingRankCounts; // packed remaining counts of each rank
+		private final long flushRanks; // remaining ranks of the line's possible flush suit(s), or 0 if no flush is possible
+		private final int k; // number of cards drawn
+
+		private Key(long lineRankCounts, long remainingRankCounts, long flushRanks, int k) {
+			this.lineRankCounts = lineRankCounts;
+			this.remainingRankCounts = remainingRankCounts;
+			this.flushRanks = flushRanks;
+			this.k = k;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof Key))
+				return false;
+			Key key = (Key) other;
+			return lineRankCounts == key.lineRankCounts && remainingRankCounts == key.remainingRankCounts
+					&& flushRanks == key.flushRanks && k == key.k;
+		}
+
+		@Override
+		public int hashCode() {
+			long h = lineRankCounts * 0x9E3779B97F4A7C15L + remainingRankCounts;
+			h = h * 0x9E3779B97F4A7C15L + flushRanks;
+			h = h * 0x9E3779B97F4A7C15L + k;
+			return (int) (h ^ (h >>> 32));
+		}
+	}
+
+	private final LinkedHashMap<Key, double[]> cache; // LRU cache of distributions by abstracted key
+	private long cacheHits = 0; // number of cache hits
+	private long cacheMisses = 0; // number of cache misses
+	private final long[] weights = new long[PokerHand.NUM_HANDS]; // number of draws per hand class of the current computation
+	private final int[] remainingCounts = new int[NUM_RANKS]; // remaining count of each rank of the current computation
+
+	/**
+	 * Create a probability engine with a cache of the given capacity.
+	 * @param cacheCapacity maximum number of cached distributions (e.g. 1 << 16)
+	 */
+	public HandCompletionProbabilities(final int cacheCapacity) {
+		cache = new LinkedHashMap<Key, double[]>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, double[]> eldest) {
+				return size() > cacheCapacity;
+			}
+		};
+	}
+
+	/**
+	 * Return the bit of the given card in a card set.
+	 * @param card card
+	 * @return the bit of the given card
+	 */
+	public static long getCardBit(Card card) {
+		return 1L << card.getCardId();
+	}
+
+	/**
+	 * Get the number of cache hits so far.
+	 * @return the number of cache hits
+	 */
+	public long getCacheHits() {
+		return cacheHits;
+	}
+
+	/**
+	 * Get the number of cache misses so far.
+	 * @return the number of cache misses
+	 */
+	public long getCacheMisses() {
+		return cacheMisses;
+	}
+
+	/**
+	 * Return the probability distribution over hand classes of the given line (possibly with null values) when its
+	 * empty positions are filled with random remaining cards.
+	 * @param hand a line of up to 5 Card objects which may contain null values
+	 * @param remainingCards set of remaining cards (bit c set if the card with id c remains)
+	 * @return probabilities indexed by hand classification identification number (shared; not to be modified)
+	 */
+	public double[] getProbabilities(Card[] hand, long remainingCards) {
+		long rankCounts = 0L;
+		int suitMask = 0;
+		int numCards = 0;
+		for (Card card : hand)
+			if (card != null) {
+				rankCounts += 1L << (4 * card.getRank());
+				suitMask |= 1 << card.getSuit();
+				numCards++;
+			}
+		return getProbabilities(rankCounts, suitMask, remainingCards, HAND_SIZE - numCards);
+	}
+
+	/**
+	 * Return the probability distribution over hand classes of the given packed line when k random remaining cards
+	 * are added to it.
+	 * @param lineRankCounts rank counts of the line's cards, packed 4 bits per rank (as for
+	 * {@link PokerHand#getPokerHandId(long, int)})
+	 * @param lineSuitMask bitwise or of 1 << suit over the line's cards
+	 * @param remainingCards set of remaining cards (bit c set if the card with id c remains)
+	 * @param k number of cards drawn, at most 5 minus the number of cards in the line and at most the number of
+	 * remaining cards
+	 * @return probabilities indexed by hand classification identification number (shared; not to be modified)
+	 */
+	public double[] getProbabilities(long lineRankCounts, int lineSuitMask, long remainingCards, int k) {
+		int numCards = getNumCards(lineRankCounts);
+		if (k < 0 || numCards + k > HAND_SIZE || k > Long.bitCount(remainingCards))
+			throw new IllegalArgumentException("Cannot draw " + k + " cards to a line of " + numCards + " from "
+					+ Long.bitCount(remainingCards) + " remaining cards");
+		if (k == 0) // (the line's own class, suits included, is certain)
+			return CERTAIN[PokerHand.getPokerHandId(lineRankCounts, lineSuitMask)];
+		long remainingRankCounts = 0L;
+		for (int suit = 0; suit < NUM_SUITS; suit++) {
+			long ranks = (remainingCards >>> (suit * NUM_RANKS)) & SUIT_RANKS;
+			for (; ranks != 0; ranks &= ranks - 1)
+				remainingRankCounts += 1L << (4 * Long.numberOfTrailingZeros(ranks));
+		}
+		long flushRanks = 0L; // abstracted remaining ranks of possible flush suits
+		boolean flushPossible = k > 0 && numCards + k == HAND_SIZE && Integer.bitCount(lineSuitMask) <= 1;
+		if (flushPossible) {
+			if (lineSuitMask != 0) // only the line's suit
+				flushRanks = (remainingCards >>> (Integer.numberOfTrailingZeros(lineSuitMask) * NUM_RANKS)) & SUIT_RANKS;
+			else { // any suit: sorted, since suits are interchangeable
+				long[] suitRanks = new long[NUM_SUITS];
+				for (int suit = 0; suit < NUM_SUITS; suit++)
+					suitRanks[suit] = (remainingCards >>> (suit * NUM_RANKS)) & SUIT_RANKS;
+				Arrays.sort(suitRanks);
+				for (int suit = 0; suit < NUM_SUITS; suit++)
+					flushRanks |= suitRanks[suit] << (suit * NUM_RANKS);
+				flushRanks |= 1L << (NUM_SUITS * NUM_RANKS); // (distinguishes an empty line)
+			}
+		}
+		Key key = new Key(lineRankCounts, remainingRankCounts, flushRanks, k);
+		double[] probabilities = cache.get(key);
+		if (probabilities != null) {
+			cacheHits++;
+			return probabilities;
+		}
+		cacheMisses++;
+		probabilities = compute(lineRankCounts, remainingRankCounts, flushRanks, flushPossible && lineSuitMask == 0, k);
+		cache.put(key, probabilities);
+		return probabilities;
+	}
+
+	/**
+	 * Return the expected score of the given packed line when k random remaining cards are added to it.
+	 * @param system point system
+	 * @param lineRankCounts packed rank counts of the line's cards
+	 * @param lineSuitMask bitwise or of 1 << suit over the line's cards
+	 * @param remainingCards set of remaining cards
+	 * @param k number of cards drawn
+	 * @return the expected score of the completed line
+	 */
+	public double getExpectedScore(PokerSquaresPointSystem system, long lineRankCounts, int lineSuitMask, long remainingCards, int k) {
+		double[] probabilities = getProbabilities(lineRankCounts, lineSuitMask, remainingCards, k);
+		int[] scores = system.getScoreTable();
+		double expectedScore = 0;
+		for (int id = 0; id < PokerHand.NUM_HANDS; id++)
+			expectedScore += probabilities[id] * scores[id];
+		return expectedScore;
+	}
+
+	/**
+	 * Return the number of cards of the given packed rank counts.
+	 * @param rankCounts packed rank counts
+	 * @return the number of cards
+	 */
+	private static int getNumCards(long rankCounts) {
+		int numCards = 0;
+		for (; rankCounts != 0; rankCounts >>>= 4)
+			numCards += (int) (rankCounts & 0xF);
+		return numCards;
+	}
+
+	/**
+	 * Compute the distribution of an uncached line completion.
+	 * @param lineRankCounts packed rank counts of the line
+	 * @param remainingRankCounts packed remaining counts of each rank
+	 * @param flushRanks remaining ranks of the possible flush suit(s) (13 bits per suit), or 0 if no flush is possible
+	 * @param anySuit whether a flush is possible in any suit (empty line), rather than in one suit
+	 * @param k number of cards drawn
+	 * @return probabilities indexed by hand classification identification number
+	 */
+	private double[] compute(long lineRankCounts, long remainingRankCounts, long flushRanks, boolean anySuit, int k) {
+		Arrays.fill(weights, 0L);
+		int numRemaining = 0;
+		for (int rank = 0; rank < NUM_RANKS; rank++) {
+			remainingCounts[rank] = (int) ((remainingRankCounts >>> (4 * rank)) & 0xF);
+			numRemaining += remainingCounts[rank];
+		}
+		addRankDraws(lineRankCounts, 0, k, 1L);
+		if (flushRanks != 0) {
+			int numFlushSuits = anySuit ? NUM_SUITS : 1;
+			for (int suit = 0; suit < numFlushSuits; suit++)
+				addFlushDraws(lineRankCounts, (int) ((flushRanks >>> (suit * NUM_RANKS)) & SUIT_RANKS), 0, k);
+		}
+		double[] probabilities = new double[PokerHand.NUM_HANDS];
+		double numDraws = DRAWS[numRemaining][k];
+		for (int id = 0; id < PokerHand.NUM_HANDS; id++)
+			probabilities[id] = weights[id] / numDraws;
+		return probabilities;
+	}
+
+	/**
+	 * Add the weights of all rank count vectors drawing the given number of cards from the given rank onward.
+	 * @param rankCounts packed rank counts of the line and the cards drawn so far
+	 * @param rank next rank to draw from
+	 * @param k number of cards still to draw
+	 * @param weight number of draws of the cards drawn so far
+	 */
+	private void addRankDraws(long rankCounts, int rank, int k, long weight) {
+		if (k == 0) {
+			weights[PokerHand.getPokerHandId(rankCounts, TWO_SUITS)] += weight;
+			return;
+		}
+		if (rank == NUM_RANKS)
+			return;
+		int available = remainingCounts[rank];
+		for (int x = 0; x <= available && x <= k; x++)
+			addRankDraws(rankCounts + ((long) x << (4 * rank)), rank + 1, k - x, weight * BINOMIALS[available][x]);
+	}
+
+	/**
+	 * Move the draws of k distinct ranks of the given suit ranks, from the given rank onward, from their non-flush
+	 * classes to their flush classes.
+	 * @param rankCounts packed rank counts of the line and the cards drawn so far
+	 * @param suitRanks remaining ranks of the flush suit
+	 * @param rank next rank to draw from
+	 * @param k number of cards still to draw
+	 */
+	private void addFlushDraws(long rankCounts, int suitRanks, int rank, int k) {
+		if (k == 0) {
+			weights[PokerHand.getPokerHandId(rankCounts, TWO_SUITS)]--;
+			weights[PokerHand.getPokerHandId(rankCounts, 1)]++;
+			return;
+		}
+		for (int r = rank; r < NUM_RANKS; r++)
+			if ((suitRanks & (1 << r)) != 0)
+				addFlushDraws(rankCounts + (1L << (4 * r)), suitRanks, r + 1, k - 1);
+	}
+
+	/**
+	 * Check that complete suited lines have their own class with certainty, then print the completion probabilities of
+	 * a few partial lines from a full deck.
+	 * @param args (not used)
+	 */
+	public static void main(String[] args) {
+		HandCompletionProbabilities probabilities = new HandCompletionProbabilities(1 << 16);
+		Card[] deck = Card.getAllCards();
+		Card[][] completeLines = {{deck[1], deck[3], deck[5], deck[7], deck[11]}, {deck[4], deck[5], deck[6], deck[7], deck[8]},
+				{deck[9], deck[10], deck[11], deck[12], deck[0]}}; // flush, straight flush, and royal flush of one suit
+		PokerHand[] completeHands = {PokerHand.FLUSH, PokerHand.STRAIGHT_FLUSH, PokerHand.ROYAL_FLUSH};
+		for (int i = 0; i < completeLines.length; i++) {
+			long remaining = (1L << Card.NUM_CARDS) - 1;
+			for (Card card : completeLines[i])
+				remaining &= ~getCardBit(card);
+			if (probabilities.getProbabilities(completeLines[i], remaining)[completeHands[i].id] != 1.0)
+				throw new IllegalStateException("Complete " + completeHands[i] + " line " + Arrays.toString(completeLines[i])
+						+ " is not certainly a " + completeHands[i]);
+		}
+		Card[][] lines = {{}, {deck[12]}, {deck[9], deck[10]}, {deck[0], deck[13], deck[26]}, {deck[1], deck[2], deck[3], deck[4]},
+				{deck[0], deck[13], deck[1], deck[14]}};
+		PokerSquaresPointSystem system = PokerSquaresPointSystem.getBritishPointSystem();
+		for (Card[] cards : lines) {
+			Card[] hand = Arrays.copyOf(cards, HAND_SIZE);
+			long remaining = (1L << Card.NUM_CARDS) - 1;
+			for (Card card : cards)
+				remaining &= ~getCardBit(card);
+			double[] p = probabilities.getProbabilities(hand, remaining);
+			System.out.println(Arrays.toString(cards));
+			double expectedScore = 0;
+			for (PokerHand pokerHand : PokerHand.values()) {
+				System.out.printf("  %-16s %.6f\n", pokerHand, p[pokerHand.id]);
+				expectedScore += p[pokerHand.id] * system.getHandScore(pokerHand);
+			}
+			System.out.printf("  expected British score %.4f\n", expectedScore);
+		}
+	}
+}
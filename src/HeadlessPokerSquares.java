@@ -0,0 +1,215 @@
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * HeadlessPokerSquares - a lean, high-throughput Poker Squares engine for baseline and regression runs of fast players.
+ *
+ * Games are played exactly as by {@link PokerSquares#play(long)}, with the same deals for the same seeds, but with
+ * little per-game overhead:
+ * <ul>
+ * <li>Deals come from a reused {@link DealShuffler}, which makes only the 25 shuffle steps that determine dealt 
+ * cards, or straight from a memory-mapped {@link DealFile}.</li>
+ * <li>The grid is kept as an occupancy mask and packed per-line state, and scored with
+ * {@link PokerHand#getPokerHandId(long, int)} without allocation.</li>
+ * <li>No transcript is produced, and move timing is off unless enabled with {@link #setGameMillis(long)}.</li>
+ * <li>Players prepare for point systems on a shared executor rather than a new thread per game object.</li>
+ * </ul>
+ */
+public class HeadlessPokerSquares {
+
+	private static final int SIZE = PokerSquares.SIZE; // square grid size
+	private static final int NUM_POS = SIZE * SIZE; // number of grid positions
+
+	private static final ExecutorService pointSystemExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "PokerSquares point system preparation");
+			thread.setDaemon(true);
+			return thread;
+		}
+	}); // shared by all headless games for player point system preparation
+
+	private final PokerSquaresPlayer player; // current player
+	private PokerSquaresPointSystem system; // current point system
+	private int[] scoreTable; // hand scores of current point system
+	private int minPoints; // minimum possible score for current point system
+	private long gameMillis = 0; // maximum milliseconds per game, or 0 for untimed play
+	private final Card[] allCards = Card.getAllCards(); // cards indexed by card id
+	private final DealShuffler shuffler = new DealShuffler(); // reused deck and deal generator
+	private final int[] dealt = new int[NUM_POS]; // reused buffer of dealt card ids
+	private final long[] lineRankCounts = new long[2 * SIZE]; // packed rank counts of rows 0-4, then columns 0-4
+	private final int[] lineSuitMasks = new int[2 * SIZE]; // suit masks of rows 0-4, then columns 0-4
+
+	/**
+	 * Create a headless game with a given player and point system.
+	 * @param player Poker Squares player object
+	 * @param system current Poker Squares point system
+	 */
+	public HeadlessPokerSquares(PokerSquaresPlayer player, PokerSquaresPointSystem system) {
+		this.player = player;
+		setPointSystem(system);
+	}
+
+	/**
+	 * Change the point system, allowing the player up to POINT_SYSTEM_MILLIS to prepare on the shared executor.
+	 * @param system new Poker Squares point system
+	 */
+	public void setPointSystem(final PokerSquaresPointSystem system) {
+		this.system = system;
+		scoreTable = system.getScoreTable();
+		minPoints = Integer.MAX_VALUE;
+		for (int points : scoreTable)
+			if (points < minPoints)
+				minPoints = points;
+		minPoints *= 10;
+		Future<?> preparation = pointSystemExecutor.submit(new Runnable() {
+			@Override
+			public void run() {
+				player.setPointSystem(system, PokerSquares.POINT_SYSTEM_MILLIS);
+			}
+		});
+		try {
+			preparation.get(PokerSquares.POINT_SYSTEM_MILLIS, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			// As in PokerSquares, play proceeds after the allotted time.
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			System.err.println("Exception thrown by " + player.getName() + ":");
+			e.getCause().printStackTrace();
+		}
+	}
+
+	/**
+	 * Get the current point system.
+	 * @return the current point system
+	 */
+	public PokerSquaresPointSystem getPointSystem() {
+		return system;
+	}
+
+	/**
+	 * Enforce a time limit per game, as PokerSquares does.  By default, headless play is untimed.
+	 * @param gameMillis maximum milliseconds per game, or 0 for untimed play
+	 */
+	public void setGameMillis(long gameMillis) {
+		this.gameMillis = gameMillis;
+	}
+
+	/**
+	 * Play a game of Poker Squares dealt from the given seed and return the final game score.
+	 * @param seed deal seed
+	 * @return final game score
+	 */
+	public int play(long seed) {
+		shuffler.deal(seed, dealt, NUM_POS);
+		return play(dealt);
+	}
+
+	/**
+	 * Play a game of Poker Squares with the given deal of a deal file and return the final game score.
+	 * @param deals deal file
+	 * @param deal index of deal in the deal file
+	 * @return final game score
+	 */
+	public int play(DealFile deals, int deal) {
+		deals.getDeal(deal, dealt);
+		return play(dealt);
+	}
+
+	/**
+	 * Play a game of Poker Squares with the given card ids in deal order and return the final game score.
+	 * @param cardIds NUM_POS card ids in deal order
+	 * @return final game score
+	 */
+	private int play(int[] cardIds) {
+		for (int line = 0; line < 2 * SIZE; line++) {
+			lineRankCounts[line] = 0L;
+			lineSuitMasks[line] = 0;
+		}
+		int occupied = 0; // bit r * SIZE + c is set if (r, c) is occupied
+		try {
+			player.init();
+			long deadline = System.nanoTime() + gameMillis * 1000000L;
+			for (int k = 0; k < NUM_POS; k++) {
+				int cardId = cardIds[k];
+				int[] play;
+				if (gameMillis > 0) {
+					long millisRemaining = (deadline - System.nanoTime()) / 1000000L;
+					play = player.getPlay(allCards[cardId], millisRemaining);
+					if (System.nanoTime() > deadline) // times out
+						return minPoints;
+				}
+				else // (untimed players are still told the nominal game time so that they may budget it)
+					play = player.getPlay(allCards[cardId], PokerSquares.GAME_MILLIS);
+				if (play.length != 2 || play[0] < 0 || play[0] >= SIZE || play[1] < 0 || play[1] >= SIZE
+						|| (occupied & (1 << (play[0] * SIZE + play[1]))) != 0) // illegal play
+					return minPoints;
+				occupied |= 1 << (play[0] * SIZE + play[1]);
+				long rankCount = 1L << (4 * (cardId % Card.NUM_RANKS));
+				int suitBit = 1 << (cardId / Card.NUM_RANKS);
+				lineRankCounts[play[0]] += rankCount;
+				lineSuitMasks[play[0]] |= suitBit;
+				lineRankCounts[SIZE + play[1]] += rankCount;
+				lineSuitMasks[SIZE + play[1]] |= suitBit;
+			}
+		}
+		catch (Exception e) {
+			System.err.println("Exception thrown by " + player.getName() + ":");
+			e.printStackTrace();
+			return minPoints;
+		}
+		int score = 0;
+		for (int line = 0; line < 2 * SIZE; line++)
+			score += scoreTable[PokerHand.getPokerHandId(lineRankCounts[line], lineSuitMasks[line])];
+		return score;
+	}
+
+	/**
+	 * Play a sequence of games and return their score statistics.
+	 * @param numGames number of games to play
+	 * @param startSeed seed of first game. Successive games use successive seeds
+	 * @return statistics of the game scores
+	 */
+	public ScoreStatistics playSequence(int numGames, long startSeed) {
+		ScoreStatistics statistics = new ScoreStatistics();
+		for (int i = 0; i < numGames; i++)
+			statistics.add(play(startSeed + i));
+		return statistics;
+	}
+
+	/**
+	 * Play all games of a deal file and return their score statistics.
+	 * @param deals deal file
+	 * @return statistics of the game scores
+	 */
+	public ScoreStatistics playSequence(DealFile deals) {
+		ScoreStatistics statistics = new ScoreStatistics();
+		for (int i = 0; i < deals.getNumDeals(); i++)
+			statistics.add(play(deals, i));
+		return statistics;
+	}
+
+	/**
+	 * Demonstrate headless game throughput of the RandomPlayer and FlushPlayer.
+	 * @param args (not used)
+	 */
+	public static void main(String[] args) {
+		PokerSquaresPointSystem system = PokerSquaresPointSystem.getBritishPointSystem();
+		PokerSquaresPlayer[] players = {new RandomPlayer(), new FlushPlayer()};
+		int numGames = 1000000;
+		for (PokerSquaresPlayer player : players) {
+			HeadlessPokerSquares game = new HeadlessPokerSquares(player, system);
+			game.playSequence(numGames / 10, 0L); // warm-up
+			long startTime = System.nanoTime();
+			ScoreStatistics statistics = game.playSequence(numGames, 0L);
+			double seconds = (System.nanoTime() - startTime) / 1e9;
+			System.out.printf("%s: %.0f games/minute\n%s\n", player.getName(), numGames * 60 / seconds, statistics);
+		}
+	}
+}
@@ -0,0 +1,226 @@
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * LatencyRecorder - records per-move getPlay latency and remaining game time for each player, to expose latency
+ * pressure before it costs a game.
+ *
+ * For each player and move index (0 through 24), latencies are counted in a log-linear (HDR-style) histogram with
+ * 16 sub-buckets per power of two, i.e. values are kept within about 6%, and remaining time after each move is kept in
+ * a second such histogram.  A move is a near miss when it uses more than (1 - nearMissFraction) of the game time that
+ * remained before it, i.e. the player came within nearMissFraction of running out of time.  Counts are lock-free
+ * atomic increments, so one recorder may be shared by games on several threads.
+ *
+ * At the end of {@link PokerSquares#playSequence(int, long, boolean)} or
+ * {@link PokerSquares#playTournament(java.util.ArrayList, java.util.ArrayList, int, long, LatencyRecorder)}, p50, p99,
+ * and p99.9 latencies per move are exported as CSV (and/or JSON) with {@link #export()}.
+ */
+public class LatencyRecorder {
+
+	private static final int NUM_MOVES = PokerSquares.SIZE * PokerSquares.SIZE; // moves per game
+	private static final int SUB_BUCKET_BITS = 4; // log2 of sub-buckets per power of two
+	private static final int NUM_BUCKETS = (64 - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS; // histogram size for all longs
+
+	/**
+	 * Latency statistics of one player.
+	 */
+	public static class PlayerLatencies {
+		private final AtomicLongArray latencyMicros = new AtomicLongArray(NUM_MOVES * NUM_BUCKETS); // latency histograms
+		private final AtomicLongArray remainingMillis = new AtomicLongArray(NUM_MOVES * NUM_BUCKETS); // remaining time histograms
+		private final AtomicLongArray nearMisses = new AtomicLongArray(NUM_MOVES); // near-miss counts
+		private final AtomicLongArray timeouts = new AtomicLongArray(NUM_MOVES); // timeout counts
+		private final double nearMissFraction; // fraction of remaining time within which a move is a near miss
+
+		private PlayerLatencies(double nearMissFraction) {
+			this.nearMissFraction = nearMissFraction;
+		}
+
+		/**
+		 * Record a move.
+		 * @param move move index (0 through 24)
+		 * @param latencyNanos getPlay latency in nanoseconds
+		 * @param millisBefore remaining game milliseconds before the move
+		 * @param millisAfter remaining game milliseconds after the move (negative for a timeout)
+		 */
+		public void record(int move, long latencyNanos, long millisBefore, long millisAfter) {
+			latencyMicros.incrementAndGet(move * NUM_BUCKETS + getBucket(latencyNanos / 1000L));
+			remainingMillis.incrementAndGet(move * NUM_BUCKETS + getBucket(millisAfter));
+			if (millisAfter < 0)
+				timeouts.incrementAndGet(move);
+			else if (millisAfter < nearMissFraction * millisBefore)
+				nearMisses.incrementAndGet(move);
+		}
+
+		private long getCount(AtomicLongArray histogram, int move) {
+			long count = 0;
+			for (int bucket = 0; bucket < NUM_BUCKETS; bucket++)
+				count += histogram.get(move * NUM_BUCKETS + bucket);
+			return count;
+		}
+
+		/**
+		 * Return the given quantile of the given move's histogram, as the highest (for latencies) or lowest (for
+		 * remaining time) value equivalent to its bucket, so that reported values err on the side of caution.
+		 * @param histogram histograms of all moves
+		 * @param move move index
+		 * @param quantile quantile in [0, 1]
+		 * @return the given quantile (0 if nothing was recorded)
+		 */
+		private long getQuantile(AtomicLongArray histogram, int move, double quantile) {
+			long count = getCount(histogram, move);
+			long rank = Math.max(1L, (long) Math.ceil(quantile * count));
+			long cumulative = 0;
+			for (int bucket = 0; bucket < NUM_BUCKETS; bucket++) {
+				cumulative += histogram.get(move * NUM_BUCKETS + bucket);
+				if (cumulative >= rank)
+					return histogram == remainingMillis ? getLowestValue(bucket) : getHighestValue(bucket);
+			}
+			return 0;
+		}
+	}
+
+	private final TreeMap<String, PlayerLatencies> players = new TreeMap<String, PlayerLatencies>(); // statistics by player name
+	private double nearMissFraction = 0.1; // fraction of remaining time within which a move is a near miss
+	private Path csvFile = null; // CSV export destination (null for standard output)
+	private Path jsonFile = null; // JSON export destination (null for none)
+
+	/**
+	 * Set the fraction of the remaining game time within which a move counts as a near miss (default 0.1).  Applies to
+	 * players first recorded after the call.
+	 * @param nearMissFraction near-miss fraction of remaining game time
+	 */
+	public void setNearMissFraction(double nearMissFraction) {
+		this.nearMissFraction = nearMissFraction;
+	}
+
+	/**
+	 * Set the export destinations.
+	 * @param csvFile CSV export file, or null to print CSV to standard output
+	 * @param jsonFile JSON export file, or null for no JSON export
+	 */
+	public void setExportFiles(Path csvFile, Path jsonFile) {
+		this.csvFile = csvFile;
+		this.jsonFile = jsonFile;
+	}
+
+	/**
+	 * Get the latency statistics of the named player, creating them if need be.  Games should look these up once
+	 * rather than per move.
+	 * @param playerName player name
+	 * @return the latency statistics of the named player
+	 */
+	public synchronized PlayerLatencies getPlayer(String playerName) {
+		PlayerLatencies latencies = players.get(playerName);
+		if (latencies == null) {
+			latencies = new PlayerLatencies(nearMissFraction);
+			players.put(playerName, latencies);
+		}
+		return latencies;
+	}
+
+	/**
+	 * Return the histogram bucket of the given value.  Values below 2 ^ (SUB_BUCKET_BITS + 1) have buckets of their
+	 * own; above that, each power of two is split into 2 ^ SUB_BUCKET_BITS buckets.
+	 * @param value value (negative values are counted as 0)
+	 * @return histogram bucket of the given value
+	 */
+	private static int getBucket(long value) {
+		if (value < (2L << SUB_BUCKET_BITS))
+			return (int) Math.max(0L, value);
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+	}
+
+	/**
+	 * Return the lowest value counted in the given histogram bucket.
+	 * @param bucket histogram bucket
+	 * @return the lowest value counted in the given histogram bucket
+	 */
+	private static long getLowestValue(int bucket) {
+		if (bucket < (2 << SUB_BUCKET_BITS))
+			return bucket;
+		int shift = (bucket >>> SUB_BUCKET_BITS) - 1;
+		return (long) ((bucket & ((1 << SUB_BUCKET_BITS) - 1)) + (1 << SUB_BUCKET_BITS)) << shift;
+	}
+
+	/**
+	 * Return the highest value counted in the given histogram bucket.
+	 * @param bucket histogram bucket
+	 * @return the highest value counted in the given histogram bucket
+	 */
+	private static long getHighestValue(int bucket) {
+		if (bucket < (2 << SUB_BUCKET_BITS))
+			return bucket;
+		int shift = (bucket >>> SUB_BUCKET_BITS) - 1;
+		long subBucket = (bucket & ((1 << SUB_BUCKET_BITS) - 1)) + (1 << SUB_BUCKET_BITS);
+		return ((subBucket + 1) << shift) - 1;
+	}
+
+	/**
+	 * Write one CSV line per player and move with the number of moves, p50/p99/p99.9/maximum latency in microseconds,
+	 * p0.1 remaining milliseconds after the move, and counts of near misses and timeouts.
+	 * @param out CSV destination
+	 */
+	public synchronized void writeCsv(PrintStream out) {
+		out.println("player,move,count,p50_us,p99_us,p999_us,max_us,p001_remaining_ms,near_misses,timeouts");
+		for (Map.Entry<String, PlayerLatencies> entry : players.entrySet()) {
+			PlayerLatencies latencies = entry.getValue();
+			for (int move = 0; move < NUM_MOVES; move++)
+				out.printf("\"%s\",%d,%d,%d,%d,%d,%d,%d,%d,%d\n", entry.getKey(), move, latencies.getCount(latencies.latencyMicros, move),
+						latencies.getQuantile(latencies.latencyMicros, move, 0.5), latencies.getQuantile(latencies.latencyMicros, move, 0.99),
+						latencies.getQuantile(latencies.latencyMicros, move, 0.999), latencies.getQuantile(latencies.latencyMicros, move, 1.0),
+						latencies.getQuantile(latencies.remainingMillis, move, 0.001), latencies.nearMisses.get(move), latencies.timeouts.get(move));
+		}
+	}
+
+	/**
+	 * Write the same statistics as {@link #writeCsv(PrintStream)} as a JSON object with an array of moves per player.
+	 * @param out JSON destination
+	 */
+	public synchronized void writeJson(PrintStream out) {
+		out.println("{");
+		int p = 0;
+		for (Map.Entry<String, PlayerLatencies> entry : players.entrySet()) {
+			PlayerLatencies latencies = entry.getValue();
+			out.printf("  \"%s\": [\n", entry.getKey().replace("\\", "\\\\").replace("\"", "\\\""));
+			for (int move = 0; move < NUM_MOVES; move++)
+				out.printf("    {\"move\": %d, \"count\": %d, \"p50_us\": %d, \"p99_us\": %d, \"p999_us\": %d, \"max_us\": %d, "
+						+ "\"p001_remaining_ms\": %d, \"near_misses\": %d, \"timeouts\": %d}%s\n",
+						move, latencies.getCount(latencies.latencyMicros, move),
+						latencies.getQuantile(latencies.latencyMicros, move, 0.5), latencies.getQuantile(latencies.latencyMicros, move, 0.99),
+						latencies.getQuantile(latencies.latencyMicros, move, 0.999), latencies.getQuantile(latencies.latencyMicros, move, 1.0),
+						latencies.getQuantile(latencies.remainingMillis, move, 0.001), latencies.nearMisses.get(move), latencies.timeouts.get(move),
+						move < NUM_MOVES - 1 ? "," : "");
+			out.printf("  ]%s\n", ++p < players.size() ? "," : "");
+		}
+		out.println("}");
+	}
+
+	/**
+	 * Export CSV (to standard output unless a CSV file is set) and JSON (if a JSON file is set).
+	 */
+	public void export() {
+		try {
+			if (csvFile == null)
+				writeCsv(System.out);
+			else {
+				PrintStream out = new PrintStream(Files.newOutputStream(csvFile));
+				writeCsv(out);
+				out.close();
+			}
+			if (jsonFile != null) {
+				PrintStream out = new PrintStream(Files.newOutputStream(jsonFile));
+				writeJson(out);
+				out.close();
+			}
+		} catch (IOException e) {
+			System.err.println("Latency export failed:");
+			e.printStackTrace();
+		}
+	}
+}
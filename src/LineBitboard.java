@@ -0,0 +1,257 @@
+/**
+ * LineBitboard - the rows and columns of a Poker Squares grid as bitboards, with constant-time straight, royal, and
+ * flush feasibility checks.
+ *
+ * Each of the 2 * SIZE lines (rows 0 through 4, then columns 0 through 4) is kept as a 13-bit rank-presence mask (bit r
+ * set if the line holds a card of rank r), a 13-bit duplicate-rank mask (bit r set if it holds two or more), a 4-bit
+ * suit mask, packed rank counts (as for {@link PokerHand#getPokerHandId(long, int)}), and its number of cards.  Cards
+ * are added and removed in constant time.
+ *
+ * Static tables indexed by rank-presence mask give, in one lookup, the straight windows that still contain all of a
+ * line's ranks (window w, for w from 0 through 8, holds ranks w through w + 4, where rank 0 is the ace; window 9 holds
+ * ten through king and the ace) and whether a royal flush's ranks still contain them.  A straight (royal) remains
+ * possible if and only if the line has no duplicate rank and a straight window (the royal window) remains.  A flush
+ * remains possible if and only if the line has at most one suit.
+ */
+public class LineBitboard {
+
+	private static final int SIZE = PokerSquares.SIZE; // number of rows/columns in square grid
+	private static final int NUM_LINES = 2 * SIZE; // number of lines (rows, then columns)
+	private static final int NUM_RANKS = Card.NUM_RANKS; // number of ranks
+	/**
+	 * number of straight windows
+	 */
+	public static final int NUM_WINDOWS = NUM_RANKS - SIZE + 2;
+	/**
+	 * straight window of ten through king and the ace
+	 */
+	public static final int ROYAL_WINDOW = NUM_WINDOWS - 1;
+	private static final short[] STRAIGHT_WINDOWS = new short[1 << NUM_RANKS]; // remaining straight windows by rank mask
+	private static final boolean[] ROYAL_POSSIBLE = new boolean[1 << NUM_RANKS]; // whether the royal window remains by rank mask
+
+	static {
+		int[] windowMasks = new int[NUM_WINDOWS];
+		for (int w = 0; w < ROYAL_WINDOW; w++)
+			windowMasks[w] = ((1 << SIZE) - 1) << w;
+		windowMasks[ROYAL_WINDOW] = (((1 << (SIZE - 1)) - 1) << (NUM_RANKS - SIZE + 1)) | 1;
+		for (int rankMask = 0; rankMask < (1 << NUM_RANKS); rankMask++) {
+			for (int w = 0; w < NUM_WINDOWS; w++)
+				if ((rankMask & ~windowMasks[w]) == 0)
+					STRAIGHT_WINDOWS[rankMask] |= 1 << w;
+			ROYAL_POSSIBLE[rankMask] = (STRAIGHT_WINDOWS[rankMask] & (1 << ROYAL_WINDOW)) != 0;
+		}
+	}
+
+	private final int[] rankMasks = new int[NUM_LINES]; // rank-presence masks
+	private final int[] duplicateMasks = new int[NUM_LINES]; // duplicate-rank masks
+	private final int[] suitMasks = new int[NUM_LINES]; // suit masks
+	private final int[] suitCounts = new int[NUM_LINES]; // suit counts, packed 4 bits per suit
+	private final long[] rankCounts = new long[NUM_LINES]; // rank counts, packed 4 bits per rank
+	private final int[] numCards = new int[NUM_LINES]; // numbers of cards
+
+	/**
+	 * Return the straight windows that still contain all ranks of the given rank-presence mask: bit w is set if window
+	 * w remains.
+	 * @param rankMask 13-bit rank-presence mask
+	 * @return the remaining straight windows
+	 */
+	public static int getStraightWindows(int rankMask) {
+		return STRAIGHT_WINDOWS[rankMask];
+	}
+
+	/**
+	 * Return whether a line with the given masks can still be completed to a straight (or straight or royal flush).
+	 * @param rankMask 13-bit rank-presence mask
+	 * @param duplicateMask 13-bit duplicate-rank mask
+	 * @return whether a straight is still possible
+	 */
+	public static boolean isStraightPossible(int rankMask, int duplicateMask) {
+		return duplicateMask == 0 && STRAIGHT_WINDOWS[rankMask] != 0;
+	}
+
+	/**
+	 * Return whether a line with the given masks can still be completed to ten through ace (a royal flush, if
+	 * suited).
+	 * @param rankMask 13-bit rank-presence mask
+	 * @param duplicateMask 13-bit duplicate-rank mask
+	 * @return whether the royal ranks are still possible
+	 */
+	public static boolean isRoyalPossible(int rankMask, int duplicateMask) {
+		return duplicateMask == 0 && ROYAL_POSSIBLE[rankMask];
+	}
+
+	/**
+	 * Return whether a line with the given suit mask can still be completed to a flush.
+	 * @param suitMask 4-bit suit mask
+	 * @return whether a flush is still possible
+	 */
+	public static boolean isFlushPossible(int suitMask) {
+		return (suitMask & (suitMask - 1)) == 0;
+	}
+
+	/**
+	 * Remove all cards.
+	 */
+	public void clear() {
+		for (int line = 0; line < NUM_LINES; line++) {
+			rankMasks[line] = 0;
+			duplicateMasks[line] = 0;
+			suitMasks[line] = 0;
+			suitCounts[line] = 0;
+			rankCounts[line] = 0L;
+			numCards[line] = 0;
+		}
+	}
+
+	/**
+	 * Set to the cards of the given grid.
+	 * @param grid grid with Card objects or null (for empty positions)
+	 */
+	public void set(Card[][] grid) {
+		clear();
+		for (int row = 0; row < SIZE; row++)
+			for (int col = 0; col < SIZE; col++)
+				if (grid[row][col] != null)
+					add(grid[row][col].getCardId(), row, col);
+	}
+
+	/**
+	 * Add a card at the given empty position.
+	 * @param card card
+	 * @param row row
+	 * @param col column
+	 */
+	public void add(Card card, int row, int col) {
+		add(card.getCardId(), row, col);
+	}
+
+	/**
+	 * Add the card with the given id at the given empty position.
+	 * @param cardId card id
+	 * @param row row
+	 * @param col column
+	 */
+	public void add(int cardId, int row, int col) {
+		addToLine(row, cardId);
+		addToLine(SIZE + col, cardId);
+	}
+
+	/**
+	 * Remove the given card from the given position.
+	 * @param card card at the position
+	 * @param row row
+	 * @param col column
+	 */
+	public void remove(Card card, int row, int col) {
+		remove(card.getCardId(), row, col);
+	}
+
+	/**
+	 * Remove the card with the given id from the given position.
+	 * @param cardId id of the card at the position
+	 * @param row row
+	 * @param col column
+	 */
+	public void remove(int cardId, int row, int col) {
+		removeFromLine(row, cardId);
+		removeFromLine(SIZE + col, cardId);
+	}
+
+	private void addToLine(int line, int cardId) {
+		int rank = cardId % NUM_RANKS, suit = cardId / NUM_RANKS;
+		int rankBit = 1 << rank;
+		if ((rankMasks[line] & rankBit) != 0)
+			duplicateMasks[line] |= rankBit;
+		rankMasks[line] |= rankBit;
+		rankCounts[line] += 1L << (4 * rank);
+		suitCounts[line] += 1 << (4 * suit);
+		suitMasks[line] |= 1 << suit;
+		numCards[line]++;
+	}
+
+	private void removeFromLine(int line, int cardId) {
+		int rank = cardId % NUM_RANKS, suit = cardId / NUM_RANKS;
+		rankCounts[line] -= 1L << (4 * rank);
+		int rankCount = (int) ((rankCounts[line] >>> (4 * rank)) & 0xF);
+		if (rankCount == 0)
+			rankMasks[line] &= ~(1 << rank);
+		else if (rankCount == 1)
+			duplicateMasks[line] &= ~(1 << rank);
+		suitCounts[line] -= 1 << (4 * suit);
+		if (((suitCounts[line] >>> (4 * suit)) & 0xF) == 0)
+			suitMasks[line] &= ~(1 << suit);
+		numCards[line]--;
+	}
+
+	/**
+	 * Get the rank-presence mask of the given line.
+	 * @param line line index: rows 0 through 4, then columns 0 through 4 as 5 through 9
+	 * @return the 13-bit rank-presence mask
+	 */
+	public int getRankMask(int line) {
+		return rankMasks[line];
+	}
+
+	/**
+	 * Get the duplicate-rank mask of the given line.
+	 * @param line line index
+	 * @return the 13-bit duplicate-rank mask
+	 */
+	public int getDuplicateMask(int line) {
+		return duplicateMasks[line];
+	}
+
+	/**
+	 * Get the suit mask of the given line.
+	 * @param line line index
+	 * @return the 4-bit suit mask
+	 */
+	public int getSuitMask(int line) {
+		return suitMasks[line];
+	}
+
+	/**
+	 * Get the packed rank counts of the given line.
+	 * @param line line index
+	 * @return the rank counts, packed 4 bits per rank
+	 */
+	public long getRankCounts(int line) {
+		return rankCounts[line];
+	}
+
+	/**
+	 * Get the number of cards of the given line.
+	 * @param line line index
+	 * @return the number of cards
+	 */
+	public int getNumCards(int line) {
+		return numCards[line];
+	}
+
+	/**
+	 * Return whether the given line can still be completed to a straight.
+	 * @param line line index
+	 * @return whether a straight is still possible
+	 */
+	public boolean isLineStraightPossible(int line) {
+		return isStraightPossible(rankMasks[line], duplicateMasks[line]);
+	}
+
+	/**
+	 * Return whether the given line can still be completed to ten through ace.
+	 * @param line line index
+	 * @return whether the royal ranks are still possible
+	 */
+	public boolean isLineRoyalPossible(int line) {
+		return isRoyalPossible(rankMasks[line], duplicateMasks[line]);
+	}
+
+	/**
+	 * Return whether the given line can still be completed to a flush.
+	 * @param line line index
+	 * @return whether a flush is still possible
+	 */
+	public boolean isLineFlushPossible(int line) {
+		return isFlushPossible(suitMasks[line]);
+	}
+}
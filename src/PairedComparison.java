@@ -0,0 +1,206 @@
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * PairedComparison - a head-to-head A/B test of two players on identical deals.
+ *
+ * Both players play each deal (seed) concurrently, and the comparison tracks the paired score differences
+ * (first minus second).  Since both players see the same cards, much of the deal-to-deal variance cancels (common
+ * random numbers), and far fewer games are needed to tell the players apart than with separate sequences.
+ *
+ * After each deal, two one-sided sequential probability ratio tests (SPRTs) are applied to the mean difference mu,
+ * using a normal model with the sample variance plugged in: mu = +delta vs. mu = 0, and mu = -delta vs. mu = 0, where
+ * delta is the given tolerance.  The comparison stops as soon as one player is shown better by delta, or both tests
+ * accept mu = 0, i.e. the players are equivalent within the tolerance.
+ */
+public class PairedComparison {
+
+	/**
+	 * Outcomes of a paired comparison.
+	 */
+	public enum Outcome {FIRST_BETTER, SECOND_BETTER, EQUIVALENT, UNDECIDED}
+
+	private final Supplier<PokerSquaresPlayer> firstFactory; // supplier of first player instances
+	private final Supplier<PokerSquaresPlayer> secondFactory; // supplier of second player instances
+	private final PokerSquaresPointSystem system; // point system for all games
+	private double tolerance = 1.0; // indifference margin delta in points per game
+	private double alpha = 0.05; // probability of wrongly declaring a difference
+	private double beta = 0.05; // probability of missing a difference of at least delta
+	private int dealsInParallel = Math.max(1, PokerSquares.getOneCorePerGameThreads() / 2); // deals played at once
+	private ScoreStatistics differences; // statistics of paired differences of the last comparison
+
+	/**
+	 * Create a paired comparison of two players under the given point system.
+	 * @param firstFactory supplier of new, independent instances of the first player
+	 * @param secondFactory supplier of new, independent instances of the second player
+	 * @param system point system for all games
+	 */
+	public PairedComparison(Supplier<PokerSquaresPlayer> firstFactory, Supplier<PokerSquaresPlayer> secondFactory,
+			PokerSquaresPointSystem system) {
+		this.firstFactory = firstFactory;
+		this.secondFactory = secondFactory;
+		this.system = system;
+	}
+
+	/**
+	 * Set the indifference margin: mean differences smaller than this many points per game are considered equivalent.
+	 * @param tolerance indifference margin in points per game
+	 */
+	public void setTolerance(double tolerance) {
+		this.tolerance = tolerance;
+	}
+
+	/**
+	 * Set the error rates of the sequential tests.
+	 * @param alpha probability of declaring a player better when the players are equal
+	 * @param beta probability of declaring equivalence when one player is better by the tolerance
+	 */
+	public void setErrorRates(double alpha, double beta) {
+		this.alpha = alpha;
+		this.beta = beta;
+	}
+
+	/**
+	 * Set the number of deals played at once (each using two threads, one per player).
+	 * @param dealsInParallel number of deals played at once
+	 */
+	public void setDealsInParallel(int dealsInParallel) {
+		this.dealsInParallel = Math.max(1, dealsInParallel);
+	}
+
+	/**
+	 * Get the statistics of the paired score differences (first minus second) of the last comparison.  (Histogram
+	 * counts of differences outside the range of game scores are clamped to the ends of the range.)
+	 * @return statistics of the paired score differences of the last comparison
+	 */
+	public ScoreStatistics getDifferences() {
+		return differences;
+	}
+
+	/**
+	 * Play both players on successive deals until the sequential tests reach a decision or maxDeals deals are played.
+	 * Decisions are made on differences in seed order, so a comparison is reproducible for deterministic players.
+	 * @param maxDeals maximum number of deals to play
+	 * @param startSeed seed of first deal. Successive deals use successive seeds
+	 * @return outcome of the comparison (UNDECIDED if maxDeals deals did not suffice)
+	 */
+	public Outcome compare(int maxDeals, long startSeed) {
+		final int slots = Math.max(1, Math.min(dealsInParallel, maxDeals));
+		final PokerSquares[] firstGames = new PokerSquares[slots];
+		final PokerSquares[] secondGames = new PokerSquares[slots];
+		differences = new ScoreStatistics();
+		Outcome outcome = Outcome.UNDECIDED;
+		ExecutorService executor = Executors.newFixedThreadPool(2 * slots);
+		try {
+			// each slot's games are created on the pool, and a slot is used by one task at a time
+			ArrayList<Future<PokerSquares>> created = new ArrayList<Future<PokerSquares>>();
+			for (int slot = 0; slot < slots; slot++) {
+				created.add(executor.submit(newGame(firstFactory)));
+				created.add(executor.submit(newGame(secondFactory)));
+			}
+			for (int slot = 0; slot < slots; slot++) {
+				firstGames[slot] = created.get(2 * slot).get();
+				secondGames[slot] = created.get(2 * slot + 1).get();
+			}
+			String firstName = firstFactory.get().getName(), secondName = secondFactory.get().getName();
+			System.out.printf("Paired comparison of \"%s\" and \"%s\", tolerance %f\nPoint system:\n%s\n", firstName, secondName, tolerance, system);
+
+			for (int batch = 0; batch < maxDeals && outcome == Outcome.UNDECIDED; batch += slots) {
+				int batchSize = Math.min(slots, maxDeals - batch);
+				ArrayList<Future<Integer>> firstScores = new ArrayList<Future<Integer>>();
+				ArrayList<Future<Integer>> secondScores = new ArrayList<Future<Integer>>();
+				for (int slot = 0; slot < batchSize; slot++) {
+					long seed = startSeed + batch + slot;
+					firstScores.add(executor.submit(playGame(firstGames[slot], seed)));
+					secondScores.add(executor.submit(playGame(secondGames[slot], seed)));
+				}
+				for (int slot = 0; slot < batchSize && outcome == Outcome.UNDECIDED; slot++) {
+					differences.add(firstScores.get(slot).get() - secondScores.get(slot).get());
+					outcome = test();
+				}
+				for (int slot = 0; slot < batchSize; slot++) { // let any remaining games of the batch finish
+					firstScores.get(slot).get();
+					secondScores.get(slot).get();
+				}
+			}
+			System.out.printf("Paired differences (\"%s\" - \"%s\"): %s\n", firstName, secondName, differences);
+			System.out.printf("Outcome after %d deals: %s\n", differences.getCount(), outcome);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted during paired comparison", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Paired comparison game failed", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+		return outcome;
+	}
+
+	/**
+	 * Apply both one-sided SPRTs to the paired differences so far.
+	 * @return outcome of the tests so far
+	 */
+	private Outcome test() {
+		if (differences.getCount() < PokerSquares.MIN_GAMES_BEFORE_STOP)
+			return Outcome.UNDECIDED;
+		double n = differences.getCount();
+		double sum = differences.getMean() * n;
+		double variance = Math.max(differences.getSampleVariance(), 1e-9); // (guards against identical players)
+		double upperBound = Math.log((1 - beta) / alpha);
+		double lowerBound = Math.log(beta / (1 - alpha));
+		double llrFirstBetter = tolerance / variance * (sum - n * tolerance / 2);
+		double llrSecondBetter = tolerance / variance * (-sum - n * tolerance / 2);
+		if (llrFirstBetter >= upperBound)
+			return Outcome.FIRST_BETTER;
+		if (llrSecondBetter >= upperBound)
+			return Outcome.SECOND_BETTER;
+		if (llrFirstBetter <= lowerBound && llrSecondBetter <= lowerBound)
+			return Outcome.EQUIVALENT;
+		return Outcome.UNDECIDED;
+	}
+
+	private Callable<PokerSquares> newGame(final Supplier<PokerSquaresPlayer> factory) {
+		return new Callable<PokerSquares>() {
+			@Override
+			public PokerSquares call() {
+				PokerSquares game = new PokerSquares(factory.get(), system);
+				game.setVerbose(false);
+				return game;
+			}
+		};
+	}
+
+	private static Callable<Integer> playGame(final PokerSquares game, final long seed) {
+		return new Callable<Integer>() {
+			@Override
+			public Integer call() {
+				return game.play(seed);
+			}
+		};
+	}
+
+	/**
+	 * Demonstrate a paired comparison of the FlushPlayer and the RandomPlayer.
+	 * @param args (not used)
+	 */
+	public static void main(String[] args) {
+		PairedComparison comparison = new PairedComparison(new Supplier<PokerSquaresPlayer>() {
+			@Override
+			public PokerSquaresPlayer get() {
+				return new FlushPlayer();
+			}
+		}, new Supplier<PokerSquaresPlayer>() {
+			@Override
+			public PokerSquaresPlayer get() {
+				return new RandomPlayer();
+			}
+		}, PokerSquaresPointSystem.getBritishPointSystem());
+		comparison.setTolerance(2.0);
+		comparison.compare(1000, 0L);
+	}
+}
@@ -11,6 +11,11 @@ public enum PokerHand {
 	FOUR_OF_A_KIND(7, "four of a kind"), STRAIGHT_FLUSH(8, "straight flush"), ROYAL_FLUSH(9, "royal flush");
 	
 	public static final int NUM_HANDS = PokerHand.values().length;
+	private static final long RANK_FIELD_LOW_BITS = 0x1111111111111L; // low bit of each packed 4-bit rank count field
+	private static final long FIVE_CONSECUTIVE_RANKS = 0x11111L; // packed presence of five consecutive ranks
+	private static final long ROYAL_RANKS = 0x1111000000001L; // packed presence of ranks T, J, Q, K, A
+	private static final int[] KIND_IDS = {0, 1, 2, 3, 6, 3, 7, 7, 7, 7, 7, 7}; // "of a kind" ids by pairs + 3 * threes + 6 * fours
+	private static final int[] RUN_IDS = {0, 4, 5, 8, 0, 4, 5, 9}; // straight or flush ids by straight | flush << 1 | royal << 2
 	public int id;
 	public String name;
 	PokerHand(int id, String name) {
@@ -85,6 +90,93 @@ public enum PokerHand {
 		return PokerHand.HIGH_CARD; // Otherwise, High Card.  This applies to empty Card arrays as well.
 	}
 	
+	/**
+	 * Given a 5-card line (possibly partially filled) in packed form, classifies the current Poker hand and returns the
+	 * classification identification number.  This is the allocation-free equivalent of {@link #getPokerHandId(Card[])}
+	 * for bulk evaluation.  The line is given as (1) its rank counts packed into 4-bit fields, the count of rank r at
+	 * bits 4r through 4r + 3 (i.e. the sum of <code>1L << (4 * card.getRank())</code> over its cards), and (2) its suit
+	 * mask, the bitwise or of <code>1 << card.getSuit()</code> over its cards.
+	 * @param rankCounts rank counts of the line's cards, packed 4 bits per rank
+	 * @param suitMask bitwise or of 1 << suit over the line's cards
+	 * @return classification identification number of the given line
+	 */
+	public static int getPokerHandId(long rankCounts, int suitMask) {
+		// Compute the number of ranks held once or more, and exactly two, three, and four times, in parallel over all ranks
+		long present = (rankCounts | (rankCounts >>> 1) | (rankCounts >>> 2)) & RANK_FIELD_LOW_BITS;
+		int numRanks = Long.bitCount(present);
+		int numPairs = Long.bitCount((rankCounts >>> 1) & ~rankCounts & ~(rankCounts >>> 2) & RANK_FIELD_LOW_BITS);
+		int numThrees = Long.bitCount(rankCounts & (rankCounts >>> 1) & ~(rankCounts >>> 2) & RANK_FIELD_LOW_BITS);
+		int numFours = Long.bitCount((rankCounts >>> 2) & RANK_FIELD_LOW_BITS);
+		int numCards = numRanks + numPairs + 2 * numThrees + 3 * numFours;
+
+		boolean hasFlush = numCards == 5 && Integer.bitCount(suitMask) == 1;
+		boolean hasRoyal = numRanks == 5 && present == ROYAL_RANKS;
+		boolean hasStraight = hasRoyal || (numRanks == 5 && (present >>> Long.numberOfTrailingZeros(present)) == FIVE_CONSECUTIVE_RANKS);
+
+		// Return classification in the same order as getPokerHand
+		if (hasFlush) {
+			if (hasRoyal)
+				return ROYAL_FLUSH.id;
+			if (hasStraight)
+				return STRAIGHT_FLUSH.id;
+		}
+		if (numFours == 1)
+			return FOUR_OF_A_KIND.id;
+		if (numThrees == 1 && numPairs == 1)
+			return FULL_HOUSE.id;
+		if (hasFlush)
+			return FLUSH.id;
+		if (hasStraight)
+			return STRAIGHT.id;
+		if (numThrees == 1)
+			return THREE_OF_A_KIND.id;
+		if (numPairs == 2)
+			return TWO_PAIR.id;
+		if (numPairs == 1)
+			return ONE_PAIR.id;
+		return HIGH_CARD.id;
+	}
+
+	/**
+	 * Batch version of {@link #getPokerHandId(long, int)}: classifies the packed lines at indices from (inclusive) to to
+	 * (exclusive) of the given lanes of rank counts and suit masks, storing their classification identification numbers
+	 * at the same indices of handIds.  Each line is classified without branches: its counts of pairs, threes, and fours
+	 * index the id of its "of a kind" class, its straight, flush, and royal flags index the id of its straight or flush
+	 * class, and (as ids are ordered by hand strength) the greater id is its class.  The loop body is thus
+	 * straight-line arithmetic that the JIT compiler can unroll and, where supported, vectorize.  Results are identical to those of
+	 * {@link #getPokerHandId(long, int)}, which remains the scalar method for single lines.
+	 * @param rankCounts lane of packed rank counts
+	 * @param suitMasks lane of suit masks
+	 * @param from index of first line
+	 * @param to index after last line
+	 * @param handIds lane in which classification identification numbers are stored
+	 */
+	public static void getPokerHandIds(long[] rankCounts, int[] suitMasks, int from, int to, byte[] handIds) {
+		for (int i = from; i < to; i++) {
+			long counts = rankCounts[i];
+			long present = (counts | (counts >>> 1) | (counts >>> 2)) & RANK_FIELD_LOW_BITS;
+			int numPairs = Long.bitCount((counts >>> 1) & ~counts & ~(counts >>> 2) & RANK_FIELD_LOW_BITS);
+			int numThrees = Long.bitCount(counts & (counts >>> 1) & ~(counts >>> 2) & RANK_FIELD_LOW_BITS);
+			int numFours = Long.bitCount((counts >>> 2) & RANK_FIELD_LOW_BITS);
+			int numCards = Long.bitCount(present) + numPairs + 2 * numThrees + 3 * numFours;
+			int flush = isZero((numCards ^ 5) | (Integer.bitCount(suitMasks[i]) ^ 1));
+			int royal = isZero((int) ((present ^ ROYAL_RANKS) | ((present ^ ROYAL_RANKS) >>> 32)));
+			long run = (present >>> Long.numberOfTrailingZeros(present)) ^ FIVE_CONSECUTIVE_RANKS;
+			int straight = isZero((int) (run | (run >>> 32))) | royal;
+			int id = Math.max(KIND_IDS[numPairs + 3 * numThrees + 6 * numFours], RUN_IDS[straight | (flush << 1) | (royal << 2)]);
+			handIds[i] = (byte) id;
+		}
+	}
+
+	/**
+	 * Return 1 if the given value is zero, and 0 otherwise, without branching.
+	 * @param x value
+	 * @return 1 if x == 0, 0 otherwise
+	 */
+	private static int isZero(int x) {
+		return ((x | -x) >>> 31) ^ 1;
+	}
+
 	/**
 	 * Given a Card array (possibly with null values) classifies the current Poker hand and returns the classification identification number.
 	 * @param hand - a Poker hand represented as an array of Card objects which may contain null values
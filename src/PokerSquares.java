@@ -1,9 +1,18 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Random;
 import java.util.Scanner;
 import java.util.Stack;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 /* A version of the solitaire game "Poker Squares" with variable point systems.
  * Author: Todd W. Neller
@@ -46,6 +55,7 @@ public class PokerSquares {
 	public static final int SIZE = 5; // square grid size
 	public static final long POINT_SYSTEM_MILLIS = 10000L; 
 	public static final long GAME_MILLIS = 30000L; // a total of 30 seconds (30000 milliseconds) per game
+	public static final int MIN_GAMES_BEFORE_STOP = 30; // minimum games before a sequence may stop early on a settled mean
 
 	private PokerSquaresPlayer player; // current player
 	private PokerSquaresPointSystem system; // current point system
@@ -54,6 +64,15 @@ public class PokerSquares {
 	private Card[][] grid = new Card[SIZE][SIZE]; // current game grid
 	private Random random = new Random(); // current game random number generator
 	private int minPoints; // minimum possible score for current point system.
+	private long seed; // seed of the current game deal
+	private GameRecordWriter recordWriter = null; // destination of binary game records (null if not recording)
+	private int movesPlayed; // number of legal plays made in the current game
+	private byte[] moveCardIds = new byte[SIZE * SIZE]; // card identification numbers of the current game's plays
+	private byte[] moveCells = new byte[SIZE * SIZE]; // row-major cell indices of the current game's plays
+	private int[] moveMicros = new int[SIZE * SIZE]; // getPlay latencies in microseconds of the current game's plays
+	private LatencyRecorder latencyRecorder = null; // recorder of per-move latencies (null if not recording)
+	private LatencyRecorder.PlayerLatencies playerLatencies = null; // current player's latency statistics
+	private boolean exportLatencies = true; // whether or not playSequence exports latency statistics when done
 
 	/**
 	 * Create a PokerSquares game with a given player and point system.
@@ -73,7 +92,15 @@ public class PokerSquares {
 		Thread thread = new Thread(new Runnable() {
 			@Override
 			public void run() {
+				PokerSquaresEvents.SetPointSystem event = new PokerSquaresEvents.SetPointSystem();
+				event.begin();
 				PLAYER.setPointSystem(SYSTEM, POINT_SYSTEM_MILLIS);
+				event.end();
+				if (event.shouldCommit()) {
+					event.player = PLAYER.getName();
+					event.pointSystemHash = SYSTEM.hashCode();
+					event.commit();
+				}
 			}
 		});
 		thread.start();
@@ -89,14 +116,65 @@ public class PokerSquares {
 	 * @return final game score
 	 */
 	public int play() {
+		return play((Card[]) null);
+	}
+
+	/**
+	 * Play a game of Poker Squares with the given deal of a deal file and return the final game score.
+	 * @param deals deal file
+	 * @param deal index of deal in the deal file
+	 * @return final game score
+	 */
+	public int play(DealFile deals, int deal) {
+		Card[] dealt = new Card[SIZE * SIZE];
+		for (int k = 0; k < dealt.length; k++)
+			dealt[k] = Card.getCard(deals.getCardId(deal, k));
+		seed = deals.getSeed(deal);
+		return play(dealt);
+	}
+
+	/**
+	 * Play a game of Poker Squares with the given deal, recording it if a game record writer is set, and return the 
+	 * final game score.
+	 * @param dealt cards in deal order, or null to deal from a deck shuffled by the game pseudorandom number generator
+	 * @return final game score
+	 */
+	private int play(Card[] dealt) {
+		int score = playGame(dealt);
+		if (recordWriter != null) {
+			try {
+				recordWriter.write(seed, system.hashCode(), score, movesPlayed, moveCardIds, moveCells, moveMicros);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		return score;
+	}
+
+	/**
+	 * Play a game of Poker Squares, noting each play for game records, and return the final game score.
+	 * @param dealt cards in deal order, or null to deal from a deck shuffled by the game pseudorandom number generator
+	 * @return final game score
+	 */
+	private int playGame(Card[] dealt) {
+		movesPlayed = 0;
 		try {
+			PokerSquaresEvents.Init initEvent = new PokerSquaresEvents.Init();
+			initEvent.begin();
 			player.init();
+			initEvent.end();
+			if (initEvent.shouldCommit()) {
+				initEvent.player = player.getName();
+				initEvent.commit();
+			}
 
 			// shuffle deck
 			Stack<Card> deck = new Stack<Card>();
-			for (Card card : Card.getAllCards())
-				deck.push(card);
-			Collections.shuffle(deck, random);
+			if (dealt == null) {
+				for (Card card : Card.getAllCards())
+					deck.push(card);
+				Collections.shuffle(deck, random);
+			}
 
 			// clear grid
 			for (int row = 0; row < SIZE; row++)
@@ -107,26 +185,56 @@ public class PokerSquares {
 			long millisRemaining = gameMillis;
 			int cardsPlaced = 0;
 			while (cardsPlaced < SIZE * SIZE) {
-				Card card = deck.pop();
+				Card card = dealt == null ? deck.pop() : dealt[cardsPlaced];
 				long startTime = System.currentTimeMillis();
+				PokerSquaresEvents.GetPlay playEvent = new PokerSquaresEvents.GetPlay();
+				playEvent.begin();
+				long startNanos = System.nanoTime();
 				int[] play = player.getPlay(card, millisRemaining);
+				long latencyNanos = System.nanoTime() - startNanos;
+				playEvent.end();
+				boolean legal = play != null && play.length == 2 && play[0] >= 0 && play[0] < SIZE && play[1] >= 0 && play[1] < SIZE
+						&& grid[play[0]][play[1]] == null;
+				if (playEvent.shouldCommit()) {
+					playEvent.player = player.getName();
+					playEvent.move = cardsPlaced;
+					playEvent.card = card.toString();
+					playEvent.cell = legal ? play[0] * SIZE + play[1] : -1;
+					playEvent.millisRemaining = millisRemaining;
+					playEvent.commit();
+				}
+				moveMicros[cardsPlaced] = (int) Math.min(Integer.MAX_VALUE, latencyNanos / 1000L);
+				long millisBefore = millisRemaining;
 				millisRemaining -= System.currentTimeMillis() - startTime;
+				if (playerLatencies != null)
+					playerLatencies.record(cardsPlaced, latencyNanos, millisBefore, millisRemaining);
 				if (millisRemaining < 0) { // times out
 					System.err.println("Player Out of Time");
 					return minPoints;
 				}
-				if (play.length != 2 || play[0] < 0 || play[0] >= SIZE || play[1] < 0 || play[1] >= SIZE || grid[play[0]][play[1]] != null) { // illegal play
+				if (!legal) { // illegal play
 					System.err.printf("Illegal play: %s\n", Arrays.toString(play));
 					return minPoints;
 				}
 				grid[play[0]][play[1]] = card;
-				cardsPlaced++;
+				moveCardIds[cardsPlaced] = (byte) card.getCardId();
+				moveCells[cardsPlaced] = (byte) (play[0] * SIZE + play[1]);
+				movesPlayed = ++cardsPlaced;
 				if (verbose) {
 					system.printGrid(grid);
 					System.out.println();
 				}
 			}
-			return system.getScore(grid);
+			PokerSquaresEvents.Scoring scoringEvent = new PokerSquaresEvents.Scoring();
+			scoringEvent.begin();
+			int score = system.getScore(grid);
+			scoringEvent.end();
+			if (scoringEvent.shouldCommit()) {
+				scoringEvent.player = player.getName();
+				scoringEvent.score = score;
+				scoringEvent.commit();
+			}
+			return score;
 		}
 		catch (Exception e) {
 			System.err.println("Exception thrown by " + player.getName() + ":");
@@ -136,6 +244,68 @@ public class PokerSquares {
 	}
 
 
+	/**
+	 * Play a game of Poker Squares dealt from the given seed and return the final game score.
+	 * @param seed seed of the game pseudorandom number generator that shuffles the deck
+	 * @return final game score
+	 */
+	public int play(long seed) {
+		setSeed(seed);
+		return play();
+	}
+
+	/**
+	 * Set the destination of binary game records.  Once set, each game played appends a fixed-width record of its seed, 
+	 * point system hash, plays, play latencies, and final score.  The writer may be shared among games.
+	 * @param recordWriter destination of game records, or null to stop recording
+	 */
+	public void setGameRecordWriter(GameRecordWriter recordWriter) {
+		this.recordWriter = recordWriter;
+	}
+
+	/**
+	 * Set the recorder of per-move getPlay latencies, remaining game time, and near misses.  Once set, the statistics
+	 * are exported at the end of each game sequence.  The recorder may be shared among games.
+	 * @param latencyRecorder recorder of per-move latencies, or null to stop recording
+	 */
+	public void setLatencyRecorder(LatencyRecorder latencyRecorder) {
+		this.latencyRecorder = latencyRecorder;
+		playerLatencies = latencyRecorder == null ? null : latencyRecorder.getPlayer(player.getName());
+	}
+
+	/**
+	 * Set the maximum milliseconds per game, e.g. to measure how a player's score scales with its time budget.  The
+	 * default is GAME_MILLIS.
+	 * @param gameMillis maximum milliseconds per game
+	 */
+	public void setGameMillis(long gameMillis) {
+		this.gameMillis = gameMillis;
+	}
+
+	/**
+	 * Get the player.
+	 * @return the player
+	 */
+	public PokerSquaresPlayer getPlayer() {
+		return player;
+	}
+
+	/**
+	 * Get the maximum milliseconds per game.
+	 * @return the maximum milliseconds per game
+	 */
+	public long getGameMillis() {
+		return gameMillis;
+	}
+
+	/**
+	 * Set whether or not to print a move-by-move transcript of each game.
+	 * @param verbose whether or not to print a move-by-move transcript of each game
+	 */
+	public void setVerbose(boolean verbose) {
+		this.verbose = verbose;
+	}
+
 	/**
 	 * Play a sequence of games, collecting and reporting statistics.
 	 * @param numGames number of games to play
@@ -149,28 +319,134 @@ public class PokerSquares {
 			System.out.printf("%d games starting at seed %d\nPoint system:\n%s\n", numGames, startSeed, system);
 		}
 		int[] scores = new int[numGames];
-		double scoreMean = 0;
-		int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
 		for (int i = 0; i < numGames; i++) {
-			setSeed(startSeed + i);
-			int score = play();
+			int score = play(startSeed + i);
 			scores[i] = score;
-			scoreMean += score;
-			if (scores[i] < min) min = scores[i];
-			if (scores[i] > max) max = scores[i];
 			System.out.println(score);
 		}
-		scoreMean /= numGames;
-		double scoreStdDev = 0;
-		for (int i = 0; i < numGames; i++) {
-			double diff = scores[i] - scoreMean;
-			scoreStdDev += diff * diff;
+		printStatistics(scores);
+		if (latencyRecorder != null && exportLatencies)
+			latencyRecorder.export();
+		return scores;
+	}
+
+	/**
+	 * Play a sequence of games, accumulating statistics in constant memory, optionally stopping early once the mean 
+	 * score is statistically settled, i.e. once the half-width of its 95% confidence interval falls below the given 
+	 * target.  At least MIN_GAMES_BEFORE_STOP games are played before stopping early.
+	 * @param maxGames maximum number of games to play
+	 * @param startSeed seed of first game. Successive games use successive seeds
+	 * @param verbose whether or not to provide verbose output of game play
+	 * @param targetHalfWidth target half-width of the 95% confidence interval of the mean score, or 0 to play all games
+	 * @return statistics of the game scores
+	 */
+	public ScoreStatistics playSequence(int maxGames, long startSeed, boolean verbose, double targetHalfWidth) {
+		this.verbose = verbose;
+		if (verbose) {
+			System.out.printf("Up to %d games starting at seed %d\nPoint system:\n%s\n", maxGames, startSeed, system);
+		}
+		ScoreStatistics statistics = new ScoreStatistics();
+		for (int i = 0; i < maxGames; i++) {
+			statistics.add(play(startSeed + i));
+			if (targetHalfWidth > 0 && statistics.getCount() >= MIN_GAMES_BEFORE_STOP
+					&& statistics.getConfidenceHalfWidth() < targetHalfWidth)
+				break;
+		}
+		System.out.println(statistics);
+		if (latencyRecorder != null && exportLatencies)
+			latencyRecorder.export();
+		return statistics;
+	}
+
+	/**
+	 * Play a sequence of games in parallel, collecting and reporting statistics.  Each worker thread creates its own
+	 * player with the given factory and its own game, so that players are confined to a single thread.  Game i is dealt
+	 * from seed startSeed + i exactly as in {@link #playSequence(int, long, boolean)}, and scores are returned in seed
+	 * order.  (Players that are themselves randomized may, of course, play the same deals differently.)
+	 * @param playerFactory supplier of a new, independent player for each worker thread
+	 * @param system point system for all games
+	 * @param numGames number of games to play
+	 * @param startSeed seed of first game. Successive games use successive seeds
+	 * @param numThreads number of games played at once.  For fair timing of time-limited players, use
+	 * {@link #getOneCorePerGameThreads()} so that each game has a core of its own.
+	 * @return integer array of game scores in seed order
+	 */
+	public static int[] playSequence(final Supplier<PokerSquaresPlayer> playerFactory, final PokerSquaresPointSystem system,
+			final int numGames, final long startSeed, int numThreads) {
+		return playSequence(playerFactory, system, numGames, startSeed, numThreads, null);
+	}
+
+	/**
+	 * Play a sequence of games in parallel as {@link #playSequence(Supplier, PokerSquaresPointSystem, int, long, int)}
+	 * does, recording per-move latencies of all workers' games in the given (shared) recorder and exporting them at
+	 * the end of the sequence.
+	 * @param playerFactory supplier of a new, independent player for each worker thread
+	 * @param system point system for all games
+	 * @param numGames number of games to play
+	 * @param startSeed seed of first game. Successive games use successive seeds
+	 * @param numThreads number of games played at once
+	 * @param latencyRecorder recorder of per-move latencies, or null for none
+	 * @return integer array of game scores in seed order
+	 */
+	public static int[] playSequence(final Supplier<PokerSquaresPlayer> playerFactory, final PokerSquaresPointSystem system,
+			final int numGames, final long startSeed, int numThreads, final LatencyRecorder latencyRecorder) {
+		numThreads = Math.max(1, Math.min(numThreads, numGames));
+		System.out.printf("%d games starting at seed %d on %d threads\n", numGames, startSeed, numThreads);
+		final int[] scores = new int[numGames];
+		final AtomicInteger nextGame = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+		try {
+			ArrayList<Future<?>> workers = new ArrayList<Future<?>>();
+			for (int t = 0; t < numThreads; t++)
+				workers.add(executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() {
+						PokerSquares game = new PokerSquares(playerFactory.get(), system);
+						game.setVerbose(false);
+						game.setLatencyRecorder(latencyRecorder);
+						int i;
+						while ((i = nextGame.getAndIncrement()) < numGames)
+							scores[i] = game.play(startSeed + i);
+						return null;
+					}
+				}));
+			for (Future<?> worker : workers)
+				worker.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while playing game sequence", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Game sequence worker failed", e.getCause());
+		} finally {
+			executor.shutdownNow();
 		}
-		scoreStdDev = Math.sqrt(scoreStdDev / numGames);
-		System.out.printf("Score Mean: %f, Standard Deviation: %f, Minimum: %d, Maximum: %d\n", scoreMean, scoreStdDev, min, max);
+		printStatistics(scores);
+		if (latencyRecorder != null)
+			latencyRecorder.export();
 		return scores;
 	}
 
+	/**
+	 * Return the number of threads that gives each concurrently played game a core of its own, leaving one core for the
+	 * rest of the JVM (garbage collection, JIT compilation, the engine itself).
+	 * @return number of threads that reserves one core per game
+	 */
+	public static int getOneCorePerGameThreads() {
+		return Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+	}
+
+	/**
+	 * Print the mean, standard deviation, minimum, and maximum of the given game scores.
+	 * @param scores game scores
+	 */
+	private static void printStatistics(int[] scores) {
+		ScoreStatistics statistics = new ScoreStatistics();
+		for (int score : scores)
+			statistics.add(score);
+		System.out.printf("Score Mean: %f, Standard Deviation: %f, Minimum: %d, Maximum: %d\n", 
+				statistics.getMean(), statistics.getStandardDeviation(), statistics.getMin(), statistics.getMax());
+	}
+
 	/**
 	 * Hold a Poker Squares tournament between the given players and point systems, the number of games played by 
 	 * each player with each point system, and the start seed determining the sequence of deals all will encounter, 
@@ -190,43 +466,82 @@ public class PokerSquares {
 			ArrayList<PokerSquaresPlayer> players,
 			ArrayList<PokerSquaresPointSystem> systems,
 			int gamesPerSystem, long startSeed) {
+		return playTournament(players, systems, gamesPerSystem, startSeed, null);
+	}
+
+	/**
+	 * Hold a Poker Squares tournament as {@link #playTournament(ArrayList, ArrayList, int, long)} does, recording 
+	 * per-move latencies of all players and exporting them at the end of the tournament.
+	 * @param players Poker Squares players taking part in the tournament
+	 * @param systems Poker Squares point systems used to evaluate players in the tournament
+	 * @param gamesPerSystem the number of games that will be played by each player with each point system
+	 * @param startSeed the start seed for the pseudorandom number generator that generates card deals
+	 * @param latencyRecorder recorder of per-move latencies, or null for none
+	 * @return the sum of the tournament scores for each of the given players
+	 */
+	public static double[] playTournament(
+			ArrayList<PokerSquaresPlayer> players,
+			ArrayList<PokerSquaresPointSystem> systems,
+			int gamesPerSystem, long startSeed, LatencyRecorder latencyRecorder) {
 		double[] tournamentScores = new double[players.size()];
+		String[] playerNames = new String[players.size()];
+		for (int i = 0; i < players.size(); i++)
+			playerNames[i] = players.get(i).getName();
 		for (PokerSquaresPointSystem system : systems) { // for each point system
 			System.out.println("Point System:\n" + system);
 			int[] totalScores = new int[players.size()];
 			for (int i = 0; i < players.size(); i++) { // for each player
 				PokerSquaresPlayer player = players.get(i);
 				System.out.printf("Player: \"%s\"\n", player.getName());
-				int[] scores = new PokerSquares(player, system).playSequence(gamesPerSystem, startSeed, false);
+				PokerSquares game = new PokerSquares(player, system);
+				game.setLatencyRecorder(latencyRecorder);
+				game.exportLatencies = false;
+				int[] scores = game.playSequence(gamesPerSystem, startSeed, false);
 				for (int score : scores)
 					totalScores[i] += score;
 				System.out.printf("Player \"%s\" total score: %d\n", player.getName(), totalScores[i]);
 			}
-			int maxTotal = Integer.MIN_VALUE;
-			int minTotal = Integer.MAX_VALUE;
-			for (int totalScore : totalScores) {
-				if (totalScore > maxTotal)
-					maxTotal = totalScore;
-				if (totalScore < minTotal)
-					minTotal = totalScore;				
-			}
-			for (int i = 0; i < players.size(); i++) { // for each player
-				double normalizedTotal = (double) (totalScores[i] - minTotal) / (maxTotal - minTotal);
-				System.out.println("Player \"" + players.get(i).getName() + "\" normalized score: " + normalizedTotal);
-				tournamentScores[i] += normalizedTotal;
-			}
+			accumulateNormalizedScores(playerNames, totalScores, tournamentScores);
+		}
+		printTournamentScores(playerNames, tournamentScores);
+		if (latencyRecorder != null)
+			latencyRecorder.export();
+		return tournamentScores;
+	}
+
+	/**
+	 * For one point system, linearly scale the given total scores so that the maximum and minimum totals map to 1.0 
+	 * and 0.0 respectively, report each normalized score, and add it to the player's tournament score.
+	 * @param playerNames player names, indexed as the given totals
+	 * @param totalScores total game scores of each player under one point system
+	 * @param tournamentScores tournament scores to which normalized scores are added
+	 */
+	public static void accumulateNormalizedScores(String[] playerNames, int[] totalScores, double[] tournamentScores) {
+		int maxTotal = Integer.MIN_VALUE;
+		int minTotal = Integer.MAX_VALUE;
+		for (int totalScore : totalScores) {
+			if (totalScore > maxTotal)
+				maxTotal = totalScore;
+			if (totalScore < minTotal)
+				minTotal = totalScore;				
 		}
-		double max = Double.NEGATIVE_INFINITY;
-		for (double score : tournamentScores) {
-			if (score > max)
-				max = score;
+		for (int i = 0; i < totalScores.length; i++) { // for each player
+			double normalizedTotal = (double) (totalScores[i] - minTotal) / (maxTotal - minTotal);
+			System.out.println("Player \"" + playerNames[i] + "\" normalized score: " + normalizedTotal);
+			tournamentScores[i] += normalizedTotal;
 		}
+	}
+
+	/**
+	 * Print a table of the given players' tournament scores.
+	 * @param playerNames player names, indexed as the given scores
+	 * @param tournamentScores tournament scores
+	 */
+	public static void printTournamentScores(String[] playerNames, double[] tournamentScores) {
 		System.out.printf("%20s %s\n", "Player", "Tournament Score");
-		for (int i = 0; i < players.size(); i++) { // for each player
-			System.out.printf("%20s %f\n", players.get(i).getName(), tournamentScores[i]);
+		for (int i = 0; i < playerNames.length; i++) { // for each player
+			System.out.printf("%20s %f\n", playerNames[i], tournamentScores[i]);
 		}
-
-		return tournamentScores;
 	}
 
 	/**
@@ -234,6 +549,7 @@ public class PokerSquares {
 	 * @param seed pseudorandom number generator seed
 	 */
 	private void setSeed(long seed) {
+		this.seed = seed;
 		random.setSeed(seed);
 	}
 
@@ -0,0 +1,398 @@
+import java.util.ArrayList;
+
+/**
+ * PokerSquaresBenchmark - reproducible micro-benchmarks of hand classification, grid scoring, and player search, so
+ * that optimizations can be measured before and after.
+ *
+ * Every case runs on fixed fixtures dealt from fixed seeds (see {@link #FIXTURE_SEED}), after warm-up iterations, and
+ * reports the mean and standard deviation of its throughput over the measured iterations.  Results of every
+ * operation are consumed into a sink so that the JIT compiler cannot eliminate them.  Cases:
+ * <ul>
+ * <li>classification of full and partial (1 to 4 card) hands with {@link PokerHand#getPokerHand(Card[])}, and of full
+ * hands with the packed {@link PokerHand#getPokerHandId(long, int)} and
+ * {@link PokerHand#getPokerHandIds(long[], int[], int, int, byte[])};</li>
+ * <li>line scoring of full hands by table lookup after packed classification, and by the
+ * {@link SpecializedScorer} of each of several point systems (through one call site, so including virtual dispatch, as
+ * in a tournament of many point systems);</li>
+ * <li>full-grid scoring with {@link PokerSquaresPointSystem#getScore(Card[][])} and
+ * {@link PokerSquaresPointSystem#getHandScores(Card[][])};</li>
+ * <li>GreedyMCPlayer simulations (simGreedyPlay) from a fixed mid-game position, to depth 2 and to game end;</li>
+ * <li>{@link Rollout} plays by each rollout policy from the same position to game end;</li>
+ * <li>ExpectimaxPlayer node rates per game depth (cards on the grid), over fixed deals;</li>
+ * <li>GreedyMCPlayer decision quality per CPU-second under each variance reduction option: the mean regret of its
+ * chosen plays at fixed decision positions, at a short fixed time per decision, measured against long reference
+ * evaluations with common random numbers.</li>
+ * </ul>
+ *
+ * Baseline (JDK 17, a single core of a shared Linux VM, default arguments):
+ * <pre>
+ *   Benchmark                                   Score         Error  Units
+ *   classify full hands (Card[])           11,780,000 +-    643,000  ops/s
+ *   classify partial hands (Card[])        12,310,000 +-    422,000  ops/s
+ *   classify full hands (packed)           61,240,000 +- 10,430,000  ops/s
+ *   score full grid                           936,000 +-     29,000  ops/s
+ *   hand scores of full grid                  907,000 +-     17,000  ops/s
+ *   simGreedyPlay depth 2 (move 12)            48,980 +-        620  ops/s
+ *   simGreedyPlay to game end (move 12)        12,510 +-        730  ops/s
+ *   rollout Random plays (move 12)         10,660,000 +-    374,000  ops/s
+ *   rollout SuitColumn plays (move 12)      9,620,000 +-    154,000  ops/s
+ *   rollout Greedy plays (move 12)          1,899,000 +-     40,000  ops/s
+ *   rollout LinePattern plays (move 12)     1,771,000 +-    202,000  ops/s
+ *   ExpectimaxPlayer (all moves)            1,212,000                nodes/s
+ *   GreedyMC independent                        0.023                regret (30% best) at 20 ms
+ *   GreedyMC CRN                                0.011                regret (40% best) at 20 ms
+ *   GreedyMC CRN + stratified                   0.007                regret (50% best) at 20 ms
+ *   GreedyMC CRN + w/o replacement              0.010                regret (43% best) at 20 ms
+ *   GreedyMC CRN + antithetic                   0.011                regret (45% best) at 20 ms
+ * </pre>
+ * Numbers vary with hardware and JVM; compare runs on the same host only.  Since all cases share one call site, the
+ * fastest operations (e.g. packed classification) include some call overhead and are best compared with each other.
+ *
+ * This is a plain Java harness rather than a JMH module, as the project has no build tool to run JMH's annotation
+ * processor; run it with <code>java PokerSquaresBenchmark [warmupIterations measuredIterations iterationMillis]</code>.
+ */
+public class PokerSquaresBenchmark {
+
+	/**
+	 * seed of the first fixture deal; fixture i is dealt from seed FIXTURE_SEED + i
+	 */
+	public static final long FIXTURE_SEED = 20150000L;
+
+	private static final int SIZE = PokerSquares.SIZE; // square grid size
+	private static final int NUM_FIXTURES = 4096; // number of fixture hands or grids
+	private static final int SIM_MOVE = 12; // number of cards played before simGreedyPlay fixtures
+	private static final int EXPECTIMAX_GAMES = 3; // number of measured ExpectimaxPlayer games
+	private static final int DECISION_MOVE = 12; // number of cards played before decision fixtures
+	private static final int NUM_DECISIONS = 12; // number of decision fixtures
+	private static final int DECISION_TRIALS = 5; // number of timed decisions per decision fixture and option
+	private static final long DECISION_MILLIS = 20L; // time per timed decision
+	private static final long REFERENCE_MILLIS = 1000L; // time per reference decision
+
+	private static long sink = 0; // consumer of benchmark results
+
+	/**
+	 * A benchmark case: a named operation, repeated for the length of each iteration.
+	 */
+	private static abstract class Case {
+		private final String name; // case name
+		private final int opsPerRun; // number of operations performed per run
+
+		private Case(String name) {
+			this(name, 1);
+		}
+
+		private Case(String name, int opsPerRun) {
+			this.name = name;
+			this.opsPerRun = opsPerRun;
+		}
+
+		/**
+		 * Perform the operation (or opsPerRun operations) once.
+		 * @param i invocation index (for cycling through fixtures)
+		 * @return a result to be consumed
+		 */
+		abstract int run(int i);
+	}
+
+	private final int warmupIterations; // number of warm-up iterations per case
+	private final int measuredIterations; // number of measured iterations per case
+	private final long iterationMillis; // duration of each iteration
+	private final PokerSquaresPointSystem system = PokerSquaresPointSystem.getBritishPointSystem(); // benchmark point system
+	private final Card[] allCards = Card.getAllCards(); // cards indexed by card id
+	private final double[] rates; // per-iteration throughput of the current case
+
+	/**
+	 * Create a benchmark with the given iteration counts and length.
+	 * @param warmupIterations number of warm-up iterations per case
+	 * @param measuredIterations number of measured iterations per case
+	 * @param iterationMillis duration of each iteration in milliseconds
+	 */
+	public PokerSquaresBenchmark(int warmupIterations, int measuredIterations, long iterationMillis) {
+		this.warmupIterations = warmupIterations;
+		this.measuredIterations = measuredIterations;
+		this.iterationMillis = iterationMillis;
+		rates = new double[warmupIterations + measuredIterations];
+	}
+
+	/**
+	 * Return the card ids of the given fixture deal.
+	 * @param fixture fixture index
+	 * @return the 25 card ids of the deal, in deal order
+	 */
+	private static int[] getDeal(int fixture) {
+		int[] cardIds = new int[SIZE * SIZE];
+		new DealShuffler().deal(FIXTURE_SEED + fixture, cardIds, cardIds.length);
+		return cardIds;
+	}
+
+	/**
+	 * Run the given case for the configured iterations and print its throughput.
+	 * @param benchmark benchmark case
+	 */
+	private void measure(Case benchmark) {
+		int i = 0;
+		for (int iteration = 0; iteration < warmupIterations + measuredIterations; iteration++) {
+			if (iteration == warmupIterations)
+				i = 0;
+			long startNanos = System.nanoTime();
+			long endNanos = startNanos + iterationMillis * 1000000L;
+			int start = i;
+			long nanos;
+			do {
+				for (int k = 0; k < 64; k++)
+					sink += benchmark.run(i++);
+			} while ((nanos = System.nanoTime()) < endNanos);
+			rates[iteration] = (double) (i - start) * benchmark.opsPerRun * 1e9 / (nanos - startNanos);
+		}
+		double mean = 0;
+		for (int iteration = warmupIterations; iteration < warmupIterations + measuredIterations; iteration++)
+			mean += rates[iteration];
+		mean /= measuredIterations;
+		double variance = 0;
+		for (int iteration = warmupIterations; iteration < warmupIterations + measuredIterations; iteration++)
+			variance += (rates[iteration] - mean) * (rates[iteration] - mean);
+		double sd = measuredIterations > 1 ? Math.sqrt(variance / (measuredIterations - 1)) : 0;
+		System.out.printf("%-38s %,14.0f +- %,12.0f  ops/s\n", benchmark.name, mean, sd);
+	}
+
+	/**
+	 * Run all benchmark cases and print their results.
+	 */
+	public void run() {
+		System.out.printf("%-38s %14s    %12s  %s\n", "Benchmark", "Score", "Error", "Units");
+
+		// hand fixtures
+		final Card[][] fullHands = new Card[NUM_FIXTURES][SIZE];
+		final Card[][] partialHands = new Card[NUM_FIXTURES][SIZE];
+		final long[] rankCounts = new long[NUM_FIXTURES];
+		final int[] suitMasks = new int[NUM_FIXTURES];
+		for (int f = 0; f < NUM_FIXTURES; f++) {
+			int[] deal = getDeal(f);
+			for (int k = 0; k < SIZE; k++) {
+				Card card = allCards[deal[k]];
+				fullHands[f][k] = card;
+				if (k < 1 + f % (SIZE - 1))
+					partialHands[f][k] = card;
+				rankCounts[f] += 1L << (4 * card.getRank());
+				suitMasks[f] |= 1 << card.getSuit();
+			}
+		}
+		final int mask = NUM_FIXTURES - 1;
+		measure(new Case("classify full hands (Card[])") {
+			@Override
+			int run(int i) {
+				return PokerHand.getPokerHand(fullHands[i & mask]).id;
+			}
+		});
+		measure(new Case("classify partial hands (Card[])") {
+			@Override
+			int run(int i) {
+				return PokerHand.getPokerHand(partialHands[i & mask]).id;
+			}
+		});
+		measure(new Case("classify full hands (packed)") {
+			@Override
+			int run(int i) {
+				return PokerHand.getPokerHandId(rankCounts[i & mask], suitMasks[i & mask]);
+			}
+		});
+		final byte[] handIds = new byte[NUM_FIXTURES];
+		measure(new Case("classify full hands (packed batch)", NUM_FIXTURES) {
+			@Override
+			int run(int i) {
+				PokerHand.getPokerHandIds(rankCounts, suitMasks, 0, NUM_FIXTURES, handIds);
+				return handIds[i & mask];
+			}
+		});
+
+		// line scoring by table and by specialized scorers
+		final int[] scoreTable = system.getScoreTable();
+		measure(new Case("line scores (table)") {
+			@Override
+			int run(int i) {
+				return scoreTable[PokerHand.getPokerHandId(rankCounts[i & mask], suitMasks[i & mask])];
+			}
+		});
+		PokerSquaresPointSystem[] scorerSystems = {system, PokerSquaresPointSystem.getSingleHandPointSystem(PokerHand.FLUSH.id),
+				PokerSquaresPointSystem.getSingleHandPointSystem(PokerHand.TWO_PAIR.id), new PokerSquaresPointSystem(new int[] {0, 1, 3, 6, 0, 0, 10, 16, 0, 0})};
+		for (PokerSquaresPointSystem scorerSystem : scorerSystems) {
+			final SpecializedScorer scorer = scorerSystem.getScorer();
+			measure(new Case("line scores (" + scorer.getName() + ")") {
+				@Override
+				int run(int i) {
+					return scorer.getLineScore(rankCounts[i & mask], suitMasks[i & mask]);
+				}
+			});
+		}
+
+		// grid fixtures
+		final Card[][][] grids = new Card[NUM_FIXTURES][SIZE][SIZE];
+		for (int f = 0; f < NUM_FIXTURES; f++) {
+			int[] deal = getDeal(f);
+			for (int k = 0; k < SIZE * SIZE; k++)
+				grids[f][k / SIZE][k % SIZE] = allCards[deal[k]];
+		}
+		measure(new Case("score full grid") {
+			@Override
+			int run(int i) {
+				return system.getScore(grids[i & mask]);
+			}
+		});
+		measure(new Case("hand scores of full grid") {
+			@Override
+			int run(int i) {
+				return system.getHandScores(grids[i & mask])[i % (2 * SIZE)];
+			}
+		});
+
+		// GreedyMCPlayer simulations from a fixed mid-game position
+		final GreedyMCPlayer greedyPlayer = new GreedyMCPlayer(2, new FastRandom(FIXTURE_SEED));
+		greedyPlayer.setPointSystem(system, PokerSquares.POINT_SYSTEM_MILLIS);
+		greedyPlayer.init();
+		int[] deal = getDeal(0);
+		for (int k = 0; k < SIM_MOVE; k++)
+			greedyPlayer.makePlay(allCards[deal[k]], k / SIZE, k % SIZE);
+		measure(new Case("simGreedyPlay depth 2 (move " + SIM_MOVE + ")") {
+			@Override
+			int run(int i) {
+				return greedyPlayer.simGreedyPlay(2);
+			}
+		});
+		measure(new Case("simGreedyPlay to game end (move " + SIM_MOVE + ")") {
+			@Override
+			int run(int i) {
+				return greedyPlayer.simGreedyPlay(SIZE * SIZE);
+			}
+		});
+
+		// rollouts to game end from the same position
+		final Rollout rollout = new Rollout(system);
+		for (int k = 0; k < SIM_MOVE; k++)
+			rollout.makePlay(deal[k], k);
+		final FastRandom rolloutRandom = new FastRandom(FIXTURE_SEED);
+		RolloutPolicy[] policies = {Rollout.getRandomPolicy(rolloutRandom), Rollout.getSuitColumnPolicy(), Rollout.getGreedyPolicy(rolloutRandom),
+				Rollout.getLinePatternPolicy(rolloutRandom)};
+		for (final RolloutPolicy policy : policies) {
+			policy.setPointSystem(system);
+			measure(new Case("rollout " + policy.getName() + " plays (move " + SIM_MOVE + ")", SIZE * SIZE - SIM_MOVE) {
+				@Override
+				int run(int i) {
+					return rollout.play(policy, rolloutRandom, SIZE * SIZE);
+				}
+			});
+		}
+
+		measureExpectimax();
+		measureVarianceReduction();
+	}
+
+	/**
+	 * Play fixed deals with the ExpectimaxPlayer (after one warm-up game) and print its node rates per game depth, i.e.
+	 * number of cards on the grid after the play.  (The ExpectimaxPlayer does not search for the first and last plays.)
+	 */
+	private void measureExpectimax() {
+		ExpectimaxPlayer player = new ExpectimaxPlayer();
+		player.setPointSystem(system, PokerSquares.POINT_SYSTEM_MILLIS);
+		SearchMetrics metrics = SearchMetrics.getMetrics(player.getName());
+		long[] nodes = new long[SIZE * SIZE];
+		long[] nanos = new long[SIZE * SIZE];
+		for (int game = -1; game < EXPECTIMAX_GAMES; game++) { // (game -1 is the warm-up game)
+			int[] deal = getDeal(game + 1);
+			player.init();
+			for (int k = 0; k < SIZE * SIZE; k++) {
+				long startNodes = metrics.getNodes();
+				long startNanos = System.nanoTime();
+				int[] play = player.getPlay(allCards[deal[k]], PokerSquares.GAME_MILLIS);
+				if (game >= 0) {
+					nanos[k] += System.nanoTime() - startNanos;
+					nodes[k] += metrics.getNodes() - startNodes;
+				}
+				sink += play[0];
+			}
+		}
+		ArrayList<String> lines = new ArrayList<String>();
+		long totalNodes = 0, totalNanos = 0;
+		for (int k = 0; k < SIZE * SIZE; k++) {
+			totalNodes += nodes[k];
+			totalNanos += nanos[k];
+			if (nodes[k] > 0)
+				lines.add(String.format("%-38s %,14.0f %16s  nodes/s", "ExpectimaxPlayer (depth " + (k + 1) + ")", nodes[k] * 1e9 / nanos[k], ""));
+		}
+		for (String line : lines)
+			System.out.println(line);
+		System.out.printf("%-38s %,14.0f %16s  nodes/s\n", "ExpectimaxPlayer (all moves)", totalNodes * 1e9 / totalNanos, "");
+	}
+
+	/**
+	 * Measure the decision quality of GreedyMCPlayer (depth 2) at DECISION_MILLIS per decision under each variance
+	 * reduction option, as the mean regret of its decisions (the reference value of the reference best play less that
+	 * of the chosen play) and the fraction of decisions matching the reference, over fixed decision positions.
+	 */
+	private void measureVarianceReduction() {
+		int remainingPlays = SIZE * SIZE - DECISION_MOVE;
+		double[][] referenceValues = new double[NUM_DECISIONS][SIZE * SIZE];
+		int[] referencePlays = new int[NUM_DECISIONS];
+		GreedyMCPlayer reference = new GreedyMCPlayer(2, new FastRandom(FIXTURE_SEED));
+		reference.setCommonRandomNumbers(true);
+		reference.setPointSystem(system, PokerSquares.POINT_SYSTEM_MILLIS);
+		for (int f = 0; f < NUM_DECISIONS; f++) {
+			int[] play = getDecision(reference, f, REFERENCE_MILLIS);
+			referencePlays[f] = play[0] * SIZE + play[1];
+			for (int cell = DECISION_MOVE; cell < SIZE * SIZE; cell++)
+				referenceValues[f][cell] = reference.getPlayValue(cell);
+		}
+		String[] names = {"independent", "CRN", "CRN + stratified", "CRN + w/o replacement", "CRN + antithetic"};
+		for (int option = 0; option < names.length; option++) {
+			GreedyMCPlayer player = new GreedyMCPlayer(2, new FastRandom(FIXTURE_SEED + option));
+			player.setCommonRandomNumbers(option > 0);
+			player.setSampling(option == 2 ? GreedyMCPlayer.STRATIFIED_SAMPLING : option == 3 ? GreedyMCPlayer.SAMPLING_WITHOUT_REPLACEMENT
+					: GreedyMCPlayer.INDEPENDENT_SAMPLING);
+			player.setAntitheticPairs(option == 4);
+			player.setPointSystem(system, PokerSquares.POINT_SYSTEM_MILLIS);
+			getDecision(player, 0, DECISION_MILLIS); // (warm-up)
+			double totalRegret = 0;
+			int matches = 0;
+			for (int f = 0; f < NUM_DECISIONS; f++)
+				for (int trial = 0; trial < DECISION_TRIALS; trial++) {
+					int[] play = getDecision(player, f, DECISION_MILLIS);
+					int cell = play[0] * SIZE + play[1];
+					totalRegret += referenceValues[f][referencePlays[f]] - referenceValues[f][cell];
+					if (cell == referencePlays[f])
+						matches++;
+				}
+			int decisions = NUM_DECISIONS * DECISION_TRIALS;
+			System.out.printf("%-38s %14.3f %16s  regret (%.0f%% best) at %d ms\n", "GreedyMC " + names[option], totalRegret / decisions, "",
+					100.0 * matches / decisions, DECISION_MILLIS);
+		}
+	}
+
+	/**
+	 * Set up the given decision fixture (a deal with its first DECISION_MOVE cards played in row-major order) for the
+	 * given player and return its play of the next card.
+	 * @param player player
+	 * @param fixture decision fixture index
+	 * @param millis time for the decision in milliseconds
+	 * @return the chosen play
+	 */
+	private int[] getDecision(GreedyMCPlayer player, int fixture, long millis) {
+		int[] deal = getDeal(fixture);
+		player.init();
+		for (int k = 0; k < DECISION_MOVE; k++)
+			player.makePlay(allCards[deal[k]], k / SIZE, k % SIZE);
+		return player.getPlay(allCards[deal[DECISION_MOVE]], millis * (SIZE * SIZE - DECISION_MOVE)); // (the player spends millisRemaining / remaining plays)
+	}
+
+	/**
+	 * Run the benchmarks.
+	 * @param args number of warm-up iterations, number of measured iterations, and iteration milliseconds (default: 5
+	 * 5 1000)
+	 */
+	public static void main(String[] args) {
+		int warmupIterations = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+		int measuredIterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		long iterationMillis = args.length > 2 ? Long.parseLong(args[2]) : 1000L;
+		new PokerSquaresBenchmark(warmupIterations, measuredIterations, iterationMillis).run();
+		if (sink == 42) // (keeps results live)
+			System.out.println();
+	}
+}
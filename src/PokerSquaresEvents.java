@@ -0,0 +1,126 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * PokerSquaresEvents - JDK Flight Recorder events for Poker Squares engine phases and player searches.
+ *
+ * The engine emits {@link SetPointSystem}, {@link Init}, {@link GetPlay}, and {@link Scoring} events.  Players may
+ * opt in to emitting {@link Search} events for their own phases (simulation batches, search iterations, table builds)
+ * with counters such as nodes and simulations:
+ * <pre>
+ *   PokerSquaresEvents.Search event = new PokerSquaresEvents.Search();
+ *   event.begin();
+ *   ... search, counting nodes and simulations in local variables ...
+ *   event.commit(getName(), "simulation batch", nodes, simulations);
+ * </pre>
+ * When recording is off (or an event is disabled in the recording settings), begin(), end(), and shouldCommit() are
+ * intrinsified no-ops and the event objects are scalar-replaced, so the events cost close to nothing and may be left
+ * in place for production tournaments.  Record with, e.g.,
+ * <code>java -XX:StartFlightRecording:filename=pokersquares.jfr PokerSquares</code>.
+ */
+public class PokerSquaresEvents {
+
+	/**
+	 * A player's preparation for a point system.
+	 */
+	@Name("pokersquares.SetPointSystem")
+	@Label("Set Point System")
+	@Category({"Poker Squares", "Engine"})
+	@StackTrace(false)
+	public static class SetPointSystem extends Event {
+		@Label("Player")
+		public String player;
+		@Label("Point System Hash")
+		public int pointSystemHash;
+	}
+
+	/**
+	 * A player's initialization before a game.
+	 */
+	@Name("pokersquares.Init")
+	@Label("Init")
+	@Category({"Poker Squares", "Engine"})
+	@StackTrace(false)
+	public static class Init extends Event {
+		@Label("Player")
+		public String player;
+	}
+
+	/**
+	 * A player's choice of play for one card.
+	 */
+	@Name("pokersquares.GetPlay")
+	@Label("Get Play")
+	@Category({"Poker Squares", "Engine"})
+	@StackTrace(false)
+	public static class GetPlay extends Event {
+		@Label("Player")
+		public String player;
+		@Label("Move")
+		@Description("Move index, 0 through 24")
+		public int move;
+		@Label("Card")
+		public String card;
+		@Label("Cell")
+		@Description("Row-major cell index of the play, or -1 if the play was illegal")
+		public int cell;
+		@Label("Milliseconds Remaining")
+		@Description("Game time remaining before the play")
+		public long millisRemaining;
+	}
+
+	/**
+	 * The scoring of a final grid.
+	 */
+	@Name("pokersquares.Scoring")
+	@Label("Scoring")
+	@Category({"Poker Squares", "Engine"})
+	@StackTrace(false)
+	public static class Scoring extends Event {
+		@Label("Player")
+		public String player;
+		@Label("Score")
+		public int score;
+	}
+
+	/**
+	 * A phase of a player's search.
+	 */
+	@Name("pokersquares.Search")
+	@Label("Search Phase")
+	@Category({"Poker Squares", "Player"})
+	@StackTrace(false)
+	public static class Search extends Event {
+		@Label("Player")
+		public String player;
+		@Label("Phase")
+		@Description("Search phase, e.g. simulation batch, search iteration, or table build")
+		public String phase;
+		@Label("Nodes")
+		public long nodes;
+		@Label("Simulations")
+		public long simulations;
+
+		/**
+		 * End this begun event and, if it is to be recorded, set its fields and commit it.
+		 * @param player player name
+		 * @param phase search phase
+		 * @param nodes number of search nodes expanded in the phase
+		 * @param simulations number of simulations performed in the phase
+		 */
+		public void commit(String player, String phase, long nodes, long simulations) {
+			end();
+			if (shouldCommit()) {
+				this.player = player;
+				this.phase = phase;
+				this.nodes = nodes;
+				this.simulations = simulations;
+				commit();
+			}
+		}
+	}
+}
@@ -1,3 +1,4 @@
+import java.util.Arrays;
 import java.util.Random;
 
 
@@ -7,10 +8,17 @@ import java.util.Random;
  */
 public class PokerSquaresPointSystem {
 	private static final Random random = new Random(); // pseudorandom number generator
-	private static final int MAX_HAND_SCORE = 127; // maximum permissible hand score
-	private static final int MIN_HAND_SCORE = -128; // maximum permissible hand score
+	/**
+	 * maximum permissible hand score
+	 */
+	public static final int MAX_HAND_SCORE = 127;
+	/**
+	 * minimum permissible hand score
+	 */
+	public static final int MIN_HAND_SCORE = -128;
 	private static final int SIZE = PokerSquares.SIZE; // Poker Squares number of rows/columns
 	private final int[] scores; // scores for each corresponding hand classification id number
+	private final SpecializedScorer scorer; // line scorer specialized to the scores
 	
 	/**
 	 * Create a point system given an array of hand scores. The score at index n corresponds to the score for 
@@ -22,6 +30,7 @@ public class PokerSquaresPointSystem {
 		for (int i = 0; i < scores.length; i++)
 			scores[i] = Math.max(MIN_HAND_SCORE, Math.min(MAX_HAND_SCORE, scores[i]));
 		this.scores = scores;
+		scorer = SpecializedScorer.getScorer(scores);
 	}
 	
 	/**
@@ -51,6 +60,26 @@ public class PokerSquaresPointSystem {
 		return scores[pokerHandId];
 	}
 	
+	/**
+	 * Get the line scorer specialized to this point system's scores (e.g. skipping classification of hands that score
+	 * the same as high card).
+	 * @return the specialized line scorer
+	 */
+	public SpecializedScorer getScorer() {
+		return scorer;
+	}
+	
+	/**
+	 * Get the score of a line given in packed form (see {@link PokerHand#getPokerHandId(long, int)}), by the
+	 * specialized scorer.
+	 * @param rankCounts rank counts of the line's cards, packed 4 bits per rank
+	 * @param suitMask bitwise or of 1 << suit over the line's cards
+	 * @return score of the line
+	 */
+	public int getLineScore(long rankCounts, int suitMask) {
+		return scorer.getLineScore(rankCounts, suitMask);
+	}
+	
 	/**
 	 * Return an array of scores indexed by Poker hand classification identification numbers.
 	 * @return an array of scores indexed by Poker hand classification identification numbers
@@ -94,6 +123,76 @@ public class PokerSquaresPointSystem {
 		return handScores;
 	}
 	
+	/**
+	 * Batch version of {@link #getScore(Card[][])} and {@link #getHandScores(Card[][])} for already classified grids:
+	 * given the hand classification identification numbers of the rows 0 through 4 followed by columns 0 through 4 of
+	 * each of a number of grids (2 * SIZE consecutive ids per grid), store the total score of each grid.
+	 * No objects are allocated.
+	 * @param handIds hand classification identification numbers, 2 * SIZE per grid
+	 * @param firstGrid index of first grid to score
+	 * @param numGrids number of grids to score
+	 * @param gridScores array in which the score of grid g is stored at index g
+	 */
+	public void getScores(byte[] handIds, int firstGrid, int numGrids, int[] gridScores) {
+		final int numHands = 2 * SIZE;
+		for (int grid = firstGrid, i = firstGrid * numHands; grid < firstGrid + numGrids; grid++) {
+			int totalScore = 0;
+			for (int hand = 0; hand < numHands; hand++)
+				totalScore += scores[handIds[i++]];
+			gridScores[grid] = totalScore;
+		}
+	}
+	
+	/**
+	 * Get the score of the (possibly partial) grid with the given row and column state.
+	 * @param lines row and column state of the grid
+	 * @return score of the grid
+	 */
+	public int getScore(LineBitboard lines) {
+		int totalScore = 0;
+		for (int line = 0; line < 2 * SIZE; line++)
+			totalScore += scorer.getLineScore(lines.getRankCounts(line), lines.getSuitMask(line));
+		return totalScore;
+	}
+	
+	/**
+	 * Compute, in one pass, the change in score of the grid with the given row and column state if the given card were
+	 * placed in each cell, storing the change for cell r * SIZE + c at that index of deltas.  Each row and column that
+	 * is not full is classified once without and once with the card, rather than once per cell; entries of occupied
+	 * cells are unspecified.  No objects are allocated.
+	 * @param cardId id of the card to place
+	 * @param lines row and column state of the grid
+	 * @param deltas array of at least SIZE * SIZE entries in which the score changes are stored
+	 */
+	public void getPlacementDeltas(int cardId, LineBitboard lines, int[] deltas) {
+		long rankCount = 1L << (4 * (cardId % Card.NUM_RANKS));
+		int suitBit = 1 << (cardId / Card.NUM_RANKS);
+		for (int col = 0; col < SIZE; col++) // column deltas, temporarily in the first row of deltas
+			deltas[col] = getLineDelta(lines, SIZE + col, rankCount, suitBit);
+		for (int row = SIZE - 1; row >= 0; row--) { // (the first row last, overwriting the column deltas)
+			int rowDelta = getLineDelta(lines, row, rankCount, suitBit);
+			for (int col = 0; col < SIZE; col++)
+				deltas[row * SIZE + col] = rowDelta + deltas[col];
+		}
+	}
+	
+	/**
+	 * Return the change in score of the given line if a card of the given packed rank count and suit bit were added
+	 * to it, or 0 if the line is full.
+	 * @param lines row and column state
+	 * @param line line index
+	 * @param rankCount packed rank count of the card
+	 * @param suitBit suit bit of the card
+	 * @return the change in score of the line
+	 */
+	private int getLineDelta(LineBitboard lines, int line, long rankCount, int suitBit) {
+		if (lines.getNumCards(line) == SIZE)
+			return 0;
+		long rankCounts = lines.getRankCounts(line);
+		int suitMask = lines.getSuitMask(line);
+		return scorer.getLineScore(rankCounts + rankCount, suitMask | suitBit) - scorer.getLineScore(rankCounts, suitMask);
+	}
+	
 	/**
 	 * Set the seed of the game pseudorandom number generator.
 	 * @param seed pseudorandom number generator seed
@@ -204,6 +303,26 @@ public class PokerSquaresPointSystem {
 	}
 	
 	
+	/**
+	 * Return whether or not the given object is a point system with the same hand scores.
+	 * @param other object being tested for equality
+	 * @return whether or not the given object is a point system with the same hand scores
+	 */
+	@Override
+	public boolean equals(Object other) {
+		return other instanceof PokerSquaresPointSystem && Arrays.equals(scores, ((PokerSquaresPointSystem) other).scores);
+	}
+
+	/**
+	 * Return a hash of the hand scores.  This is stable across runs and JVMs, so it may be used to identify the point 
+	 * system of recorded games.
+	 * @return a hash of the hand scores
+	 */
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(scores);
+	}
+
 	/* (non-Javadoc)
 	 * @see java.lang.Object#toString()
 	 */
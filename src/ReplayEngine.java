@@ -0,0 +1,234 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * ReplayEngine - rebuilds the final grids of recorded games and re-scores them in bulk, without calling any player.
+ *
+ * Replay proceeds in two passes.  First, each recorded placement sequence is replayed into packed per-line state
+ * (see {@link PokerHand#getPokerHandId(long, int)}) and the 10 row and column hands are classified once, giving 10
+ * hand classification identification numbers per game.  Second, the classified games are scored under each point
+ * system with the batch {@link PokerSquaresPointSystem#getScores(byte[], int, int, int[])}, which is a table lookup per
+ * hand.  Both passes are split across threads by game range and allocate nothing per game, so re-evaluating millions
+ * of archived games under new point systems takes seconds.
+ *
+ * As in {@link PokerSquares#play()}, a game that ended early (timeout, illegal play, or exception) scores 10 times the
+ * minimum hand score of the point system.
+ */
+public class ReplayEngine {
+
+	private static final int NUM_HANDS = 2 * PokerSquares.SIZE; // rows and columns per grid
+
+	private final int numThreads; // number of threads sharing each pass
+
+	/**
+	 * Create a replay engine using all available processors.
+	 */
+	public ReplayEngine() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Create a replay engine using the given number of threads.
+	 * @param numThreads number of threads sharing each pass
+	 */
+	public ReplayEngine(int numThreads) {
+		this.numThreads = Math.max(1, numThreads);
+	}
+
+	/**
+	 * Replay the given placement sequence and classify the resulting row and column hands.
+	 * @param cardIds card identification numbers in play order
+	 * @param cells row-major cell indices in play order
+	 * @param numPlayed number of plays
+	 * @param rankCounts work array of length 2 * SIZE for packed line rank counts
+	 * @param suitMasks work array of length 2 * SIZE for line suit masks
+	 * @param handIds array in which the hand classification identification numbers of rows 0 through 4 followed by
+	 * columns 0 through 4 are stored
+	 * @param offset index in handIds of the first row's hand
+	 */
+	public static void classifyGame(byte[] cardIds, byte[] cells, int numPlayed, long[] rankCounts, int[] suitMasks, byte[] handIds, int offset) {
+		for (int line = 0; line < NUM_HANDS; line++) {
+			rankCounts[line] = 0L;
+			suitMasks[line] = 0;
+		}
+		for (int play = 0; play < numPlayed; play++) {
+			int cardId = cardIds[play], cell = cells[play];
+			long rankCount = 1L << (4 * (cardId % Card.NUM_RANKS));
+			int suitBit = 1 << (cardId / Card.NUM_RANKS);
+			int row = cell / PokerSquares.SIZE, col = PokerSquares.SIZE + cell % PokerSquares.SIZE;
+			rankCounts[row] += rankCount;
+			suitMasks[row] |= suitBit;
+			rankCounts[col] += rankCount;
+			suitMasks[col] |= suitBit;
+		}
+		for (int line = 0; line < NUM_HANDS; line++)
+			handIds[offset + line] = (byte) PokerHand.getPokerHandId(rankCounts[line], suitMasks[line]);
+	}
+
+	/**
+	 * Replay and classify all games of the given game record file.
+	 * @param reader game record file reader
+	 * @return hand classification identification numbers, 2 * SIZE per game (rows 0 through 4, then columns 0 through 4)
+	 */
+	public byte[] classify(final GameRecordReader reader) {
+		final byte[] handIds = new byte[reader.getNumRecords() * NUM_HANDS];
+		runInParallel(reader.getNumRecords(), new RangeTask() {
+			@Override
+			public void run(int first, int last) {
+				byte[] cardIds = new byte[GameRecordWriter.NUM_PLAYS];
+				byte[] cells = new byte[GameRecordWriter.NUM_PLAYS];
+				long[] rankCounts = new long[NUM_HANDS];
+				int[] suitMasks = new int[NUM_HANDS];
+				for (int record = first; record < last; record++) {
+					int numPlayed = reader.getNumPlayed(record);
+					for (int play = 0; play < numPlayed; play++) {
+						cardIds[play] = (byte) reader.getCardId(record, play);
+						cells[play] = (byte) reader.getCell(record, play);
+					}
+					classifyGame(cardIds, cells, numPlayed, rankCounts, suitMasks, handIds, record * NUM_HANDS);
+				}
+			}
+		});
+		return handIds;
+	}
+
+	/**
+	 * Re-score all games of the given game record file under each of the given point systems.
+	 * @param reader game record file reader
+	 * @param systems point systems
+	 * @return game scores indexed by point system, then record
+	 */
+	public int[][] rescore(final GameRecordReader reader, final ArrayList<PokerSquaresPointSystem> systems) {
+		final byte[] handIds = classify(reader);
+		final int[][] scores = new int[systems.size()][reader.getNumRecords()];
+		final int[] minPoints = new int[systems.size()];
+		for (int s = 0; s < systems.size(); s++) {
+			minPoints[s] = Integer.MAX_VALUE;
+			for (int points : systems.get(s).getScoreTable())
+				minPoints[s] = Math.min(minPoints[s], points);
+			minPoints[s] *= 10;
+		}
+		runInParallel(reader.getNumRecords(), new RangeTask() {
+			@Override
+			public void run(int first, int last) {
+				for (int s = 0; s < systems.size(); s++) {
+					systems.get(s).getScores(handIds, first, last - first, scores[s]);
+					for (int record = first; record < last; record++)
+						if (reader.getNumPlayed(record) < GameRecordWriter.NUM_PLAYS)
+							scores[s][record] = minPoints[s];
+				}
+			}
+		});
+		return scores;
+	}
+
+	/**
+	 * Count the recorded games whose replayed score under their recorded point system differs from their recorded
+	 * score, e.g. to check a suspected scoring bug.  Games whose point system is not among those given are skipped.
+	 * @param reader game record file reader
+	 * @param systems candidate point systems of the recorded games, matched by hash
+	 * @return number of games whose replayed score differs from their recorded score
+	 */
+	public int countMismatches(GameRecordReader reader, ArrayList<PokerSquaresPointSystem> systems) {
+		HashMap<Integer, Integer> systemIndices = new HashMap<Integer, Integer>();
+		for (int s = 0; s < systems.size(); s++)
+			systemIndices.put(systems.get(s).hashCode(), s);
+		int[][] scores = rescore(reader, systems);
+		int mismatches = 0;
+		for (int record = 0; record < reader.getNumRecords(); record++) {
+			Integer s = systemIndices.get(reader.getPointSystemHash(record));
+			if (s != null && scores[s][record] != reader.getScore(record))
+				mismatches++;
+		}
+		return mismatches;
+	}
+
+	/**
+	 * A pass over a range of games.
+	 */
+	private interface RangeTask {
+		/**
+		 * Process games first (inclusive) through last (exclusive).
+		 * @param first index of first game
+		 * @param last index after last game
+		 */
+		void run(int first, int last);
+	}
+
+	/**
+	 * Split games 0 through numGames - 1 into one contiguous range per thread and process the ranges in parallel.
+	 * @param numGames number of games
+	 * @param task pass over a range of games
+	 */
+	private void runInParallel(int numGames, final RangeTask task) {
+		int numRanges = Math.max(1, Math.min(numThreads, numGames));
+		ExecutorService executor = Executors.newFixedThreadPool(numRanges);
+		try {
+			ArrayList<Future<?>> futures = new ArrayList<Future<?>>();
+			for (int r = 0; r < numRanges; r++) {
+				final int first = (int) ((long) numGames * r / numRanges);
+				final int last = (int) ((long) numGames * (r + 1) / numRanges);
+				futures.add(executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() {
+						task.run(first, last);
+						return null;
+					}
+				}));
+			}
+			for (Future<?> future : futures)
+				future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted during replay", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Replay task failed", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Demonstrate recording games under one point system and re-scoring them under several others.
+	 * @param args (not used)
+	 * @throws IOException if the temporary game record file cannot be written or read
+	 */
+	public static void main(String[] args) throws IOException {
+		Path file = Files.createTempFile("pokersquares", ".psqr");
+		PokerSquaresPointSystem british = PokerSquaresPointSystem.getBritishPointSystem();
+		PokerSquares game = new PokerSquares(new FlushPlayer(), british);
+		GameRecordWriter writer = new GameRecordWriter(file);
+		game.setGameRecordWriter(writer);
+		game.playSequence(100000, 0L, false, 0);
+		writer.close();
+
+		ArrayList<PokerSquaresPointSystem> systems = new ArrayList<PokerSquaresPointSystem>();
+		PokerSquaresPointSystem.setSeed(42L);
+		systems.add(british);
+		systems.add(PokerSquaresPointSystem.getAmericanPointSystem());
+		systems.add(PokerSquaresPointSystem.getHypercornerPointSystem());
+		GameRecordReader reader = new GameRecordReader(file);
+		ReplayEngine engine = new ReplayEngine();
+		long startTime = System.currentTimeMillis();
+		int[][] scores = engine.rescore(reader, systems);
+		long millis = System.currentTimeMillis() - startTime;
+		System.out.printf("Re-scored %d games under %d point systems in %d ms\n", reader.getNumRecords(), systems.size(), millis);
+		for (int s = 0; s < systems.size(); s++) {
+			ScoreStatistics statistics = new ScoreStatistics();
+			for (int score : scores[s])
+				statistics.add(score);
+			System.out.printf("Point system %d: %s\n", s, statistics);
+		}
+		System.out.printf("Mismatches with recorded scores: %d\n", engine.countMismatches(reader, systems));
+		reader.close();
+		Files.delete(file);
+	}
+}
@@ -0,0 +1,529 @@
+/**
+ * Rollout - a compact, incrementally updated Poker Squares game state for fast Monte Carlo rollouts to game end.
+ *
+ * The grid is kept as an occupancy mask (bit r * SIZE + c set if (r, c) is occupied), a list of empty cells, the
+ * bitboard state of each row and column ({@link LineBitboard}), and the undealt cards ({@link BitDeck}).  Plays and
+ * their undoing (in last-in, first-out order) take constant time, and a rollout ({@link #play(RolloutPolicy, FastRandom,
+ * int)}) draws random undealt cards, places them by a {@link RolloutPolicy}, scores the grid by packed classification
+ * of its ten lines, and undoes its plays.  No objects are created per play.
+ *
+ * Policies provided:
+ * <ul>
+ * <li>random: a uniformly random empty cell;</li>
+ * <li>suit column: the card's suit column (clubs, diamonds, hearts, spades), then the last column, then any cell, in
+ * the manner of FlushPlayer;</li>
+ * <li>greedy: the cell of greatest immediate score change, by incremental evaluation of its row and column;</li>
+ * <li>line pattern: the cell of greatest change in estimated final line scores, looked up by line pattern (hand
+ * classification of the cards so far, number of cards, and whether a flush and a straight are still possible) in a
+ * table estimated from random self-play under the point system.</li>
+ * </ul>
+ */
+public class Rollout {
+
+	private static final int SIZE = PokerSquares.SIZE; // square grid size
+	private static final int NUM_POS = SIZE * SIZE; // number of grid positions
+	private static final int NUM_LINES = 2 * SIZE; // number of lines (rows, then columns)
+	private static final int ALL_POSITIONS = (1 << NUM_POS) - 1; // occupancy mask of a full grid
+	private static final int COLUMN_POSITIONS = 1 | (1 << SIZE) | (1 << (2 * SIZE)) | (1 << (3 * SIZE)) | (1 << (4 * SIZE)); // occupancy mask of column 0
+	private static final int PATTERN_GAMES = 20000; // number of random self-play games estimating line pattern values
+	/**
+	 * number of line patterns (see {@link #getLinePattern(long, int, int, int, int)})
+	 */
+	public static final int NUM_LINE_PATTERNS = PokerHand.NUM_HANDS * (SIZE + 1) * 4;
+
+	private PokerSquaresPointSystem system; // point system
+	private SpecializedScorer scorer; // line scorer of the point system
+	private final LineBitboard lines = new LineBitboard(); // row and column state
+	private final BitDeck deck = new BitDeck(); // undealt cards
+	private final int[] emptyCells = new int[NUM_POS]; // the first NUM_POS - numPlayed are empty; then played cells, last played first
+	private final int[] emptyIndices = new int[NUM_POS]; // index of each cell in emptyCells
+	private int occupancy; // occupancy mask
+	private int numPlayed; // number of cards played
+	private long numPlies; // number of plays simulated by rollouts
+
+	/**
+	 * Create an empty rollout state for the given point system.
+	 * @param system point system
+	 */
+	public Rollout(PokerSquaresPointSystem system) {
+		setPointSystem(system);
+		clear();
+	}
+
+	/**
+	 * Set the point system.
+	 * @param system point system
+	 */
+	public void setPointSystem(PokerSquaresPointSystem system) {
+		this.system = system;
+		scorer = system.getScorer();
+	}
+
+	/**
+	 * Get the point system.
+	 * @return the point system
+	 */
+	public PokerSquaresPointSystem getPointSystem() {
+		return system;
+	}
+
+	/**
+	 * Empty the grid and restore all cards to the deck.
+	 */
+	public void clear() {
+		lines.clear();
+		deck.reset();
+		for (int cell = 0; cell < NUM_POS; cell++) {
+			emptyCells[cell] = cell;
+			emptyIndices[cell] = cell;
+		}
+		occupancy = 0;
+		numPlayed = 0;
+	}
+
+	/**
+	 * Play the given undealt card at the given empty cell.
+	 * @param cardId card id
+	 * @param cell row-major index of an empty cell
+	 */
+	public void makePlay(int cardId, int cell) {
+		int last = emptyCells[NUM_POS - 1 - numPlayed]; // move the last empty cell into the played cell's place
+		int index = emptyIndices[cell];
+		emptyCells[index] = last;
+		emptyIndices[last] = index;
+		emptyCells[NUM_POS - 1 - numPlayed] = cell;
+		emptyIndices[cell] = NUM_POS - 1 - numPlayed;
+		occupancy |= 1 << cell;
+		lines.add(cardId, cell / SIZE, cell % SIZE);
+		deck.remove(cardId);
+		numPlayed++;
+	}
+
+	/**
+	 * Undo the most recent play not yet undone.
+	 */
+	public void undoPlay() {
+		numPlayed--;
+		int cell = emptyCells[NUM_POS - 1 - numPlayed]; // (the played cell was moved just past the empty cells)
+		occupancy &= ~(1 << cell);
+		lines.remove(deck.restore(), cell / SIZE, cell % SIZE);
+	}
+
+	/**
+	 * Get the number of cards played.
+	 * @return the number of cards played
+	 */
+	public int getNumPlayed() {
+		return numPlayed;
+	}
+
+	/**
+	 * Get the occupancy mask: bit r * SIZE + c is set if (r, c) is occupied.
+	 * @return the occupancy mask
+	 */
+	public int getOccupancy() {
+		return occupancy;
+	}
+
+	/**
+	 * Get the ith empty cell, for 0 <= i < NUM_POS - {@link #getNumPlayed()}.  (Empty cells are in no particular
+	 * order.)
+	 * @param i index of empty cell
+	 * @return row-major index of the ith empty cell
+	 */
+	public int getEmptyCell(int i) {
+		return emptyCells[i];
+	}
+
+	/**
+	 * Get the row and column state.
+	 * @return the line bitboards (rows 0 through 4, then columns 0 through 4 as lines 5 through 9)
+	 */
+	public LineBitboard getLines() {
+		return lines;
+	}
+
+	/**
+	 * Get the undealt cards.
+	 * @return the undealt cards
+	 */
+	public BitDeck getDeck() {
+		return deck;
+	}
+
+	/**
+	 * Get the total number of plays simulated by rollouts of this state.
+	 * @return the number of simulated plays
+	 */
+	public long getNumPlies() {
+		return numPlies;
+	}
+
+	/**
+	 * Get the current score of the given line.
+	 * @param line line index
+	 * @return the score of the line's hand
+	 */
+	public int getLineScore(int line) {
+		return scorer.getLineScore(lines.getRankCounts(line), lines.getSuitMask(line));
+	}
+
+	/**
+	 * Get the current score of the (possibly partial) grid.
+	 * @return the grid score
+	 */
+	public int getScore() {
+		int score = 0;
+		for (int line = 0; line < NUM_LINES; line++)
+			score += getLineScore(line);
+		return score;
+	}
+
+	/**
+	 * Return the score of the given line if the given card were added to it.
+	 * @param line line index
+	 * @param cardId card id
+	 * @return the score of the line's hand with the card
+	 */
+	public int getLineScore(int line, int cardId) {
+		return scorer.getLineScore(lines.getRankCounts(line) + (1L << (4 * (cardId % Card.NUM_RANKS))),
+				lines.getSuitMask(line) | (1 << (cardId / Card.NUM_RANKS)));
+	}
+
+	/**
+	 * Return the change in score if the given card were placed in the given empty cell.
+	 * @param cardId card id
+	 * @param cell row-major index of an empty cell
+	 * @return the change in score of the cell's row and column
+	 */
+	public int getPlacementDelta(int cardId, int cell) {
+		int row = cell / SIZE;
+		int col = SIZE + cell % SIZE;
+		return getLineScore(row, cardId) - getLineScore(row) + getLineScore(col, cardId) - getLineScore(col);
+	}
+
+	/**
+	 * Return the pattern index of a line: its hand classification (of the cards so far), number of cards, and whether
+	 * a flush and a straight are still possible.
+	 * @param rankCounts packed rank counts
+	 * @param suitMask suit mask
+	 * @param rankMask rank-presence mask
+	 * @param duplicateMask duplicate-rank mask
+	 * @param numCards number of cards
+	 * @return the line pattern index, at least 0 and less than {@link #NUM_LINE_PATTERNS}
+	 */
+	public static int getLinePattern(long rankCounts, int suitMask, int rankMask, int duplicateMask, int numCards) {
+		return ((PokerHand.getPokerHandId(rankCounts, suitMask) * (SIZE + 1) + numCards) * 2
+				+ (LineBitboard.isFlushPossible(suitMask) ? 1 : 0)) * 2 + (LineBitboard.isStraightPossible(rankMask, duplicateMask) ? 1 : 0);
+	}
+
+	/**
+	 * Return the current pattern index of the given line.
+	 * @param line line index
+	 * @return the line pattern index
+	 */
+	public int getLinePattern(int line) {
+		return getLinePattern(lines.getRankCounts(line), lines.getSuitMask(line), lines.getRankMask(line), lines.getDuplicateMask(line),
+				lines.getNumCards(line));
+	}
+
+	/**
+	 * Return the pattern index of the given line if the given card were added to it.
+	 * @param line line index
+	 * @param cardId card id
+	 * @return the line pattern index with the card
+	 */
+	public int getLinePattern(int line, int cardId) {
+		int rankBit = 1 << (cardId % Card.NUM_RANKS);
+		int rankMask = lines.getRankMask(line);
+		return getLinePattern(lines.getRankCounts(line) + (1L << (4 * (cardId % Card.NUM_RANKS))),
+				lines.getSuitMask(line) | (1 << (cardId / Card.NUM_RANKS)), rankMask | rankBit,
+				lines.getDuplicateMask(line) | (rankMask & rankBit), lines.getNumCards(line) + 1);
+	}
+
+	/**
+	 * Simulate play from the current state: draw random undealt cards and place them by the given policy, to the given
+	 * depth limit or game end, whichever comes first.  Return the resulting grid score, having undone the simulated
+	 * plays.
+	 * @param policy rollout policy
+	 * @param random pseudorandom number generator for card draws
+	 * @param depthLimit maximum number of plays
+	 * @return grid score after the simulated plays
+	 */
+	public int play(RolloutPolicy policy, FastRandom random, int depthLimit) {
+		int depth = Math.min(depthLimit, NUM_POS - numPlayed);
+		for (int d = 0; d < depth; d++) {
+			int cardId = deck.sample(random);
+			makePlay(cardId, policy.getPlay(this, cardId));
+		}
+		int score = getScore();
+		for (int d = 0; d < depth; d++)
+			undoPlay();
+		numPlies += depth;
+		return score;
+	}
+
+	/**
+	 * Simulate play from the current state as {@link #play(RolloutPolicy, FastRandom, int)} does, drawing the given
+	 * card sequence rather than random cards.
+	 * @param policy rollout policy
+	 * @param cardIds ids of undealt cards to draw, in order (at least as many as the plays simulated)
+	 * @param depthLimit maximum number of plays
+	 * @return grid score after the simulated plays
+	 */
+	public int play(RolloutPolicy policy, int[] cardIds, int depthLimit) {
+		return play(policy, cardIds, 0, depthLimit);
+	}
+
+	/**
+	 * Simulate play from the current state as {@link #play(RolloutPolicy, int[], int)} does, drawing the given card
+	 * sequence from the given index on.
+	 * @param policy rollout policy
+	 * @param cardIds ids of undealt cards to draw, in order from index from (at least as many as the plays simulated)
+	 * @param from index of the first card to draw
+	 * @param depthLimit maximum number of plays
+	 * @return grid score after the simulated plays
+	 */
+	public int play(RolloutPolicy policy, int[] cardIds, int from, int depthLimit) {
+		int depth = Math.min(depthLimit, NUM_POS - numPlayed);
+		for (int d = 0; d < depth; d++)
+			makePlay(cardIds[from + d], policy.getPlay(this, cardIds[from + d]));
+		int score = getScore();
+		for (int d = 0; d < depth; d++)
+			undoPlay();
+		numPlies += depth;
+		return score;
+	}
+
+	/**
+	 * Return a policy that places each card in a uniformly random empty cell.
+	 * @param random pseudorandom number generator (not to be shared between threads)
+	 * @return a uniformly random rollout policy
+	 */
+	public static RolloutPolicy getRandomPolicy(final FastRandom random) {
+		return new RolloutPolicy() {
+			@Override
+			public void setPointSystem(PokerSquaresPointSystem system) {
+			}
+
+			@Override
+			public int getPlay(Rollout rollout, int cardId) {
+				return rollout.getEmptyCell(random.nextInt(NUM_POS - rollout.getNumPlayed()));
+			}
+
+			@Override
+			public String getName() {
+				return "Random";
+			}
+		};
+	}
+
+	/**
+	 * Return a policy that places each card in the first empty cell of its suit column (clubs, diamonds, hearts, and
+	 * spades in columns 0 through 3), else of the last column, else the first empty cell, as the FlushPlayer does.
+	 * @return a suit column rollout policy
+	 */
+	public static RolloutPolicy getSuitColumnPolicy() {
+		return new RolloutPolicy() {
+			@Override
+			public void setPointSystem(PokerSquaresPointSystem system) {
+			}
+
+			@Override
+			public int getPlay(Rollout rollout, int cardId) {
+				int empty = ~rollout.getOccupancy() & ALL_POSITIONS;
+				int cells = empty & (COLUMN_POSITIONS << (cardId / Card.NUM_RANKS));
+				if (cells == 0)
+					cells = empty & (COLUMN_POSITIONS << (SIZE - 1));
+				if (cells == 0)
+					cells = empty;
+				return Integer.numberOfTrailingZeros(cells);
+			}
+
+			@Override
+			public String getName() {
+				return "SuitColumn";
+			}
+		};
+	}
+
+	/**
+	 * Return a policy that places each card where it most increases the score of the partial grid, breaking ties
+	 * randomly.
+	 * @param random pseudorandom number generator for tie-breaking (not to be shared between threads)
+	 * @return a greedy rollout policy
+	 */
+	public static RolloutPolicy getGreedyPolicy(final FastRandom random) {
+		return new RolloutPolicy() {
+			private final int[] lineDeltas = new int[NUM_LINES]; // score changes of the lines with the card
+
+			@Override
+			public void setPointSystem(PokerSquaresPointSystem system) {
+			}
+
+			@Override
+			public int getPlay(Rollout rollout, int cardId) {
+				for (int line = 0; line < NUM_LINES; line++)
+					lineDeltas[line] = rollout.getLineScore(line, cardId) - rollout.getLineScore(line);
+				return getBestCell(rollout, lineDeltas, random);
+			}
+
+			@Override
+			public String getName() {
+				return "Greedy";
+			}
+		};
+	}
+
+	/**
+	 * Return a policy that places each card where it most increases the estimated final scores of its row and
+	 * column, as looked up by line pattern (see {@link #getLinePatternValues(PokerSquaresPointSystem, int, FastRandom)}),
+	 * breaking ties randomly.
+	 * @param random pseudorandom number generator for tie-breaking and table estimation (not to be shared between
+	 * threads)
+	 * @return a line pattern rollout policy
+	 */
+	public static RolloutPolicy getLinePatternPolicy(final FastRandom random) {
+		return new RolloutPolicy() {
+			private PokerSquaresPointSystem system = null; // point system of the pattern values
+			private double[] patternValues; // estimated final line score by line pattern
+			private final double[] lineDeltas = new double[NUM_LINES]; // estimated final score changes of the lines with the card
+
+			@Override
+			public void setPointSystem(PokerSquaresPointSystem system) {
+				if (system != this.system) {
+					patternValues = getLinePatternValues(system, PATTERN_GAMES, random);
+					this.system = system;
+				}
+			}
+
+			@Override
+			public int getPlay(Rollout rollout, int cardId) {
+				if (rollout.getPointSystem() != system)
+					setPointSystem(rollout.getPointSystem());
+				for (int line = 0; line < NUM_LINES; line++)
+					lineDeltas[line] = patternValues[rollout.getLinePattern(line, cardId)] - patternValues[rollout.getLinePattern(line)];
+				return getBestCell(rollout, lineDeltas, random);
+			}
+
+			@Override
+			public String getName() {
+				return "LinePattern";
+			}
+		};
+	}
+
+	/**
+	 * Return the empty cell of greatest sum of its row and column deltas, breaking ties randomly.
+	 * @param rollout rollout state
+	 * @param lineDeltas delta by line
+	 * @param random pseudorandom number generator for tie-breaking
+	 * @return row-major index of the best empty cell
+	 */
+	private static int getBestCell(Rollout rollout, int[] lineDeltas, FastRandom random) {
+		int bestCell = -1;
+		int bestDelta = Integer.MIN_VALUE;
+		int numBest = 0;
+		for (int empty = ~rollout.getOccupancy() & ALL_POSITIONS; empty != 0; empty &= empty - 1) {
+			int cell = Integer.numberOfTrailingZeros(empty);
+			int delta = lineDeltas[cell / SIZE] + lineDeltas[SIZE + cell % SIZE];
+			if (delta > bestDelta) {
+				bestDelta = delta;
+				bestCell = cell;
+				numBest = 1;
+			}
+			else if (delta == bestDelta && random.nextInt(++numBest) == 0) // (reservoir sampling of the best cells)
+				bestCell = cell;
+		}
+		return bestCell;
+	}
+
+	/**
+	 * Return the empty cell of greatest sum of its row and column deltas, breaking ties randomly.
+	 * @param rollout rollout state
+	 * @param lineDeltas (real-valued) delta by line
+	 * @param random pseudorandom number generator for tie-breaking
+	 * @return row-major index of the best empty cell
+	 */
+	private static int getBestCell(Rollout rollout, double[] lineDeltas, FastRandom random) {
+		int bestCell = -1;
+		double bestDelta = Double.NEGATIVE_INFINITY;
+		int numBest = 0;
+		for (int empty = ~rollout.getOccupancy() & ALL_POSITIONS; empty != 0; empty &= empty - 1) {
+			int cell = Integer.numberOfTrailingZeros(empty);
+			double delta = lineDeltas[cell / SIZE] + lineDeltas[SIZE + cell % SIZE];
+			if (delta > bestDelta) {
+				bestDelta = delta;
+				bestCell = cell;
+				numBest = 1;
+			}
+			else if (delta == bestDelta && random.nextInt(++numBest) == 0)
+				bestCell = cell;
+		}
+		return bestCell;
+	}
+
+	/**
+	 * Estimate the expected final score of a line by line pattern, as the mean final score of lines of that pattern
+	 * over random self-play.  Patterns never seen are valued at the score of their hand classification.
+	 * @param system point system
+	 * @param numGames number of self-play games
+	 * @param random pseudorandom number generator
+	 * @return estimated final line score by line pattern index
+	 */
+	public static double[] getLinePatternValues(PokerSquaresPointSystem system, int numGames, FastRandom random) {
+		Rollout rollout = new Rollout(system);
+		RolloutPolicy policy = getRandomPolicy(random);
+		double[] totals = new double[NUM_LINE_PATTERNS];
+		int[] counts = new int[NUM_LINE_PATTERNS];
+		int[][] patterns = new int[NUM_POS + 1][NUM_LINES]; // line patterns after each play
+		for (int game = 0; game < numGames; game++) {
+			for (int line = 0; line < NUM_LINES; line++)
+				patterns[0][line] = rollout.getLinePattern(line);
+			for (int k = 1; k <= NUM_POS; k++) {
+				int cardId = rollout.getDeck().sample(random);
+				rollout.makePlay(cardId, policy.getPlay(rollout, cardId));
+				for (int line = 0; line < NUM_LINES; line++)
+					patterns[k][line] = rollout.getLinePattern(line);
+			}
+			for (int line = 0; line < NUM_LINES; line++) {
+				int lineScore = rollout.getLineScore(line);
+				for (int k = 0; k <= NUM_POS; k++) {
+					totals[patterns[k][line]] += lineScore;
+					counts[patterns[k][line]]++;
+				}
+			}
+			rollout.clear();
+		}
+		int[] scoreTable = system.getScoreTable();
+		double[] values = new double[NUM_LINE_PATTERNS];
+		for (int pattern = 0; pattern < NUM_LINE_PATTERNS; pattern++)
+			values[pattern] = counts[pattern] > 0 ? totals[pattern] / counts[pattern] : scoreTable[pattern / ((SIZE + 1) * 4)];
+		return values;
+	}
+
+	/**
+	 * Demonstrate the rollout rate and full-game mean score of each policy with the British point system.
+	 * @param args (not used)
+	 */
+	public static void main(String[] args) {
+		PokerSquaresPointSystem system = PokerSquaresPointSystem.getBritishPointSystem();
+		FastRandom random = new FastRandom(0L);
+		RolloutPolicy[] policies = {getRandomPolicy(random), getSuitColumnPolicy(), getGreedyPolicy(random), getLinePatternPolicy(random)};
+		Rollout rollout = new Rollout(system);
+		int numGames = 1000000;
+		for (RolloutPolicy policy : policies) {
+			policy.setPointSystem(system);
+			for (int i = 0; i < numGames / 10; i++) // warm-up
+				rollout.play(policy, random, NUM_POS);
+			ScoreStatistics statistics = new ScoreStatistics();
+			long startPlies = rollout.getNumPlies();
+			long startTime = System.nanoTime();
+			for (int i = 0; i < numGames; i++)
+				statistics.add(rollout.play(policy, random, NUM_POS));
+			double seconds = (System.nanoTime() - startTime) / 1e9;
+			System.out.printf("%-12s %,12.0f plies/s  mean %.2f +- %.2f\n", policy.getName(), (rollout.getNumPlies() - startPlies) / seconds,
+					statistics.getMean(), statistics.getConfidenceHalfWidth());
+		}
+	}
+}
@@ -0,0 +1,32 @@
+/**
+ * RolloutPolicy - a fast placement policy for Monte Carlo rollouts (see {@link Rollout}).
+ *
+ * Rollout policies read the game state through primitive accessors of the rollout rather than through Card objects
+ * and grids, so that rollouts may be simulated to game end at millions of plays per second.  Implementations are
+ * provided by {@link Rollout#getRandomPolicy(FastRandom)}, {@link Rollout#getSuitColumnPolicy()},
+ * {@link Rollout#getGreedyPolicy(FastRandom)}, and {@link Rollout#getLinePatternPolicy(FastRandom)}.  Policies may keep
+ * scratch state and are not to be shared between threads.
+ */
+public interface RolloutPolicy {
+
+	/**
+	 * Prepare the policy for the given point system (e.g. precompute tables).  Called before any rollout under this
+	 * point system.
+	 * @param system point system
+	 */
+	void setPointSystem(PokerSquaresPointSystem system);
+
+	/**
+	 * Choose the cell of the given card.
+	 * @param rollout rollout state
+	 * @param cardId id of the card to place
+	 * @return row-major index of an empty cell
+	 */
+	int getPlay(Rollout rollout, int cardId);
+
+	/**
+	 * Get the name of the policy.
+	 * @return the name of the policy
+	 */
+	String getName();
+}
@@ -0,0 +1,144 @@
+/**
+ * ScoreStatistics - a streaming accumulator of game score statistics.
+ *
+ * Scores are added one at a time and summarized in constant memory: Welford's running mean and variance, minimum,
+ * maximum, a histogram over all attainable game scores, and a normal-approximation 95% confidence interval for the
+ * mean.  Accumulators from parallel workers may be combined with {@link #merge(ScoreStatistics)}.
+ */
+public class ScoreStatistics {
+
+	/**
+	 * z value for a two-sided 95% confidence interval
+	 */
+	public static final double Z_95 = 1.959963984540054;
+	/**
+	 * minimum attainable game score (each of the 10 hands with the minimum permissible hand score)
+	 */
+	public static final int MIN_SCORE = 2 * PokerSquares.SIZE * PokerSquaresPointSystem.MIN_HAND_SCORE;
+	/**
+	 * maximum attainable game score (each of the 10 hands with the maximum permissible hand score)
+	 */
+	public static final int MAX_SCORE = 2 * PokerSquares.SIZE * PokerSquaresPointSystem.MAX_HAND_SCORE;
+
+	private long count = 0; // number of scores
+	private double mean = 0; // running mean
+	private double sumSquaredDiffs = 0; // running sum of squared differences from the mean (Welford's M2)
+	private int min = Integer.MAX_VALUE; // minimum score
+	private int max = Integer.MIN_VALUE; // maximum score
+	private long[] histogram = new long[MAX_SCORE - MIN_SCORE + 1]; // score counts indexed by score - MIN_SCORE
+
+	/**
+	 * Add a score.
+	 * @param score game score
+	 */
+	public void add(int score) {
+		count++;
+		double diff = score - mean;
+		mean += diff / count;
+		sumSquaredDiffs += diff * (score - mean);
+		if (score < min) min = score;
+		if (score > max) max = score;
+		histogram[Math.max(0, Math.min(histogram.length - 1, score - MIN_SCORE))]++;
+	}
+
+	/**
+	 * Add all scores of another accumulator to this one (Chan et al.'s parallel combination of Welford accumulators).
+	 * @param other accumulator to be added
+	 */
+	public void merge(ScoreStatistics other) {
+		if (other.count == 0)
+			return;
+		long total = count + other.count;
+		double diff = other.mean - mean;
+		sumSquaredDiffs += other.sumSquaredDiffs + diff * diff * ((double) count * other.count / total);
+		mean += diff * other.count / total;
+		count = total;
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+		for (int i = 0; i < histogram.length; i++)
+			histogram[i] += other.histogram[i];
+	}
+
+	/**
+	 * Get the number of scores.
+	 * @return the number of scores
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * Get the mean score.
+	 * @return the mean score (NaN if there are no scores)
+	 */
+	public double getMean() {
+		return count == 0 ? Double.NaN : mean;
+	}
+
+	/**
+	 * Get the population standard deviation of the scores.
+	 * @return the population standard deviation of the scores
+	 */
+	public double getStandardDeviation() {
+		return Math.sqrt(sumSquaredDiffs / count);
+	}
+
+	/**
+	 * Get the sample variance of the scores (with Bessel's correction).
+	 * @return the sample variance of the scores
+	 */
+	public double getSampleVariance() {
+		return count < 2 ? Double.POSITIVE_INFINITY : sumSquaredDiffs / (count - 1);
+	}
+
+	/**
+	 * Get the half-width of the 95% confidence interval for the mean score.
+	 * @return the half-width of the 95% confidence interval for the mean score (infinite for fewer than two scores)
+	 */
+	public double getConfidenceHalfWidth() {
+		return Z_95 * Math.sqrt(getSampleVariance() / count);
+	}
+
+	/**
+	 * Get the minimum score.
+	 * @return the minimum score
+	 */
+	public int getMin() {
+		return min;
+	}
+
+	/**
+	 * Get the maximum score.
+	 * @return the maximum score
+	 */
+	public int getMax() {
+		return max;
+	}
+
+	/**
+	 * Get the number of games with the given score.
+	 * @param score game score
+	 * @return the number of games with the given score
+	 */
+	public long getHistogramCount(int score) {
+		return (score < MIN_SCORE || score > MAX_SCORE) ? 0 : histogram[score - MIN_SCORE];
+	}
+
+	/**
+	 * Print the nonzero entries of the score histogram.
+	 */
+	public void printHistogram() {
+		System.out.printf("%6s %s\n", "Score", "Games");
+		for (int score = min; score <= max; score++)
+			if (getHistogramCount(score) != 0)
+				System.out.printf("%6d %d\n", score, getHistogramCount(score));
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		return String.format("Games: %d, Score Mean: %f, Standard Deviation: %f, Minimum: %d, Maximum: %d, 95%% CI: [%f, %f]",
+				count, getMean(), getStandardDeviation(), min, max, getMean() - getConfidenceHalfWidth(), getMean() + getConfidenceHalfWidth());
+	}
+}
@@ -0,0 +1,271 @@
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * SearchMetrics - live search throughput counters of a player: simulations, nodes, leaf evaluations, and cache hits
+ * and misses.
+ *
+ * There is one SearchMetrics object per player name, shared by all instances of that player (e.g. one per tournament
+ * thread), so counters are striped {@link LongAdder}s that threads may add to without contention.  Even so, players
+ * should count in local variables on their hot paths and add them once per getPlay.
+ *
+ * Each SearchMetrics object is registered as a JMX MBean named
+ * <code>PokerSquares:type=SearchMetrics,player=&lt;player name&gt;</code>, so that long tournaments may be watched
+ * with JConsole or VisualVM.  In addition, {@link #startSnapshotLog(Path, long)} periodically appends the counters
+ * and interval rates of all players to a CSV log file.
+ */
+public class SearchMetrics implements SearchMetricsMBean {
+
+	private static final int NUM_COUNTERS = 5; // simulations, nodes, leaf evaluations, cache hits, cache misses
+	private static final TreeMap<String, SearchMetrics> registry = new TreeMap<String, SearchMetrics>(); // metrics by player name
+	private static ScheduledExecutorService snapshotExecutor = null; // snapshot log writer (null if not logging)
+	private static PrintStream snapshotOut = null; // snapshot log destination (null if not logging)
+
+	private final String playerName; // player name
+	private final LongAdder simulations = new LongAdder(); // number of Monte Carlo simulations
+	private final LongAdder nodes = new LongAdder(); // number of search nodes expanded
+	private final LongAdder leafEvaluations = new LongAdder(); // number of leaf (grid) evaluations
+	private final LongAdder cacheHits = new LongAdder(); // number of cache hits
+	private final LongAdder cacheMisses = new LongAdder(); // number of cache misses
+	private volatile long resetNanos = System.nanoTime(); // time of creation or last reset
+	private final long[] snapshotCounts = new long[NUM_COUNTERS]; // counts at last snapshot (snapshot thread only)
+	private long snapshotNanos = resetNanos; // time of last snapshot (snapshot thread only)
+
+	private SearchMetrics(String playerName) {
+		this.playerName = playerName;
+	}
+
+	/**
+	 * Get the metrics of the named player, creating and registering them with the platform MBean server if need be.
+	 * Players should look these up once (e.g. in init()) rather than per move.
+	 * @param playerName player name
+	 * @return the metrics of the named player
+	 */
+	public static synchronized SearchMetrics getMetrics(String playerName) {
+		SearchMetrics metrics = registry.get(playerName);
+		if (metrics == null) {
+			metrics = new SearchMetrics(playerName);
+			registry.put(playerName, metrics);
+			try {
+				ManagementFactory.getPlatformMBeanServer().registerMBean(metrics,
+						new ObjectName("PokerSquares:type=SearchMetrics,player=" + ObjectName.quote(playerName)));
+			} catch (JMException e) {
+				System.err.println("SearchMetrics MBean registration failed for " + playerName + ":");
+				e.printStackTrace();
+			}
+		}
+		return metrics;
+	}
+
+	/**
+	 * Get the player name.
+	 * @return the player name
+	 */
+	public String getPlayerName() {
+		return playerName;
+	}
+
+	/**
+	 * Add to the number of Monte Carlo simulations.
+	 * @param count number of simulations
+	 */
+	public void addSimulations(long count) {
+		simulations.add(count);
+	}
+
+	/**
+	 * Add to the number of search nodes expanded.
+	 * @param count number of nodes
+	 */
+	public void addNodes(long count) {
+		nodes.add(count);
+	}
+
+	/**
+	 * Add to the number of leaf evaluations.
+	 * @param count number of leaf evaluations
+	 */
+	public void addLeafEvaluations(long count) {
+		leafEvaluations.add(count);
+	}
+
+	/**
+	 * Add to the numbers of cache hits and misses.
+	 * @param hits number of cache hits
+	 * @param misses number of cache misses
+	 */
+	public void addCacheLookups(long hits, long misses) {
+		cacheHits.add(hits);
+		cacheMisses.add(misses);
+	}
+
+	/* (non-Javadoc)
+	 * @see SearchMetricsMBean#getSimulations()
+	 */
+	@Override
+	public long getSimulations() {
+		return simulations.sum();
+	}
+
+	/* (non-Javadoc)
+	 * @see SearchMetricsMBean#getNodes()
+	 */
+	@Override
+	public long getNodes() {
+		return nodes.sum();
+	}
+
+	/* (non-Javadoc)
+	 * @see SearchMetricsMBean#getLeafEvaluations()
+	 */
+	@Override
+	public long getLeafEvaluations() {
+		return leafEvaluations.sum();
+	}
+
+	/* (non-Javadoc)
+	 * @see SearchMetricsMBean#getCacheHits()
+	 */
+	@Override
+	public long getCacheHits() {
+		return cacheHits.sum();
+	}
+
+	/* (non-Javadoc)
+	 * @see SearchMetricsMBean#getCacheMisses()
+	 */
+	@Override
+	public long getCacheMisses() {
+		return cacheMisses.sum();
+	}
+
+	/* (non-Javadoc)
+	 * @see SearchMetricsMBean#getCacheHitRate()
+	 */
+	@Override
+	public double getCacheHitRate() {
+		long hits = cacheHits.sum();
+		return (double) hits / (hits + cacheMisses.sum());
+	}
+
+	private double getSeconds() {
+		return (System.nanoTime() - resetNanos) / 1e9;
+	}
+
+	/* (non-Javadoc)
+	 * @see SearchMetricsMBean#getSimulationsPerSecond()
+	 */
+	@Override
+	public double getSimulationsPerSecond() {
+		return simulations.sum() / getSeconds();
+	}
+
+	/* (non-Javadoc)
+	 * @see SearchMetricsMBean#getNodesPerSecond()
+	 */
+	@Override
+	public double getNodesPerSecond() {
+		return nodes.sum() / getSeconds();
+	}
+
+	/* (non-Javadoc)
+	 * @see SearchMetricsMBean#getLeafEvaluationsPerSecond()
+	 */
+	@Override
+	public double getLeafEvaluationsPerSecond() {
+		return leafEvaluations.sum() / getSeconds();
+	}
+
+	/* (non-Javadoc)
+	 * @see SearchMetricsMBean#reset()
+	 */
+	@Override
+	public void reset() {
+		simulations.reset();
+		nodes.reset();
+		leafEvaluations.reset();
+		cacheHits.reset();
+		cacheMisses.reset();
+		resetNanos = System.nanoTime();
+	}
+
+	/**
+	 * Append one CSV line of this player's counters and their rates per second since the last snapshot (counts
+	 * reduced by a reset are treated as restarting from zero).
+	 * @param out CSV destination
+	 * @param timeMillis snapshot wall-clock time
+	 */
+	private void writeSnapshot(PrintStream out, long timeMillis) {
+		long[] counts = {simulations.sum(), nodes.sum(), leafEvaluations.sum(), cacheHits.sum(), cacheMisses.sum()};
+		long nanos = System.nanoTime();
+		double seconds = (nanos - snapshotNanos) / 1e9;
+		double[] rates = new double[3];
+		for (int i = 0; i < rates.length; i++)
+			rates[i] = (counts[i] >= snapshotCounts[i] ? counts[i] - snapshotCounts[i] : counts[i]) / seconds;
+		out.printf("%d,\"%s\",%d,%d,%d,%d,%d,%.1f,%.1f,%.1f\n", timeMillis, playerName, counts[0], counts[1], counts[2],
+				counts[3], counts[4], rates[0], rates[1], rates[2]);
+		System.arraycopy(counts, 0, snapshotCounts, 0, NUM_COUNTERS);
+		snapshotNanos = nanos;
+	}
+
+	/**
+	 * Append a snapshot of the metrics of all players to the given log file every given number of milliseconds, on a
+	 * daemon thread, until {@link #stopSnapshotLog()}.  Each line holds the time, the player name, the five counters,
+	 * and simulations, nodes, and leaf evaluations per second over the interval.  Replaces any current snapshot log.
+	 * @param file CSV log file (created if need be, otherwise appended to)
+	 * @param periodMillis snapshot period in milliseconds
+	 * @throws IOException if the log file cannot be opened
+	 */
+	public static synchronized void startSnapshotLog(Path file, long periodMillis) throws IOException {
+		stopSnapshotLog();
+		boolean isNew = !Files.exists(file);
+		final PrintStream out = new PrintStream(Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND), true);
+		if (isNew)
+			out.println("time_ms,player,simulations,nodes,leaf_evaluations,cache_hits,cache_misses,simulations_per_s,nodes_per_s,leaf_evaluations_per_s");
+		snapshotExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "PokerSquares search metrics snapshot");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		snapshotExecutor.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				long timeMillis = System.currentTimeMillis();
+				synchronized (SearchMetrics.class) {
+					for (Map.Entry<String, SearchMetrics> entry : registry.entrySet())
+						entry.getValue().writeSnapshot(out, timeMillis);
+				}
+			}
+		}, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+		snapshotOut = out;
+	}
+
+	/**
+	 * Stop the current snapshot log, if any, and close its file.
+	 */
+	public static synchronized void stopSnapshotLog() {
+		if (snapshotExecutor != null) {
+			snapshotExecutor.shutdown();
+			snapshotExecutor = null;
+			snapshotOut.close();
+			snapshotOut = null;
+		}
+	}
+}
@@ -0,0 +1,65 @@
+/**
+ * SearchMetricsMBean - JMX management interface of {@link SearchMetrics}, registered as
+ * <code>PokerSquares:type=SearchMetrics,player=&lt;player name&gt;</code>.
+ */
+public interface SearchMetricsMBean {
+
+	/**
+	 * Get the number of Monte Carlo simulations since the last reset.
+	 * @return the number of simulations
+	 */
+	long getSimulations();
+
+	/**
+	 * Get the number of search nodes expanded since the last reset.
+	 * @return the number of nodes
+	 */
+	long getNodes();
+
+	/**
+	 * Get the number of leaf (grid) evaluations since the last reset.
+	 * @return the number of leaf evaluations
+	 */
+	long getLeafEvaluations();
+
+	/**
+	 * Get the number of cache hits since the last reset.
+	 * @return the number of cache hits
+	 */
+	long getCacheHits();
+
+	/**
+	 * Get the number of cache misses since the last reset.
+	 * @return the number of cache misses
+	 */
+	long getCacheMisses();
+
+	/**
+	 * Get the fraction of cache lookups that hit since the last reset.
+	 * @return the cache hit rate (NaN without lookups)
+	 */
+	double getCacheHitRate();
+
+	/**
+	 * Get the mean number of simulations per second since the last reset.
+	 * @return simulations per second
+	 */
+	double getSimulationsPerSecond();
+
+	/**
+	 * Get the mean number of nodes per second since the last reset.
+	 * @return nodes per second
+	 */
+	double getNodesPerSecond();
+
+	/**
+	 * Get the mean number of leaf evaluations per second since the last reset.
+	 * @return leaf evaluations per second
+	 */
+	double getLeafEvaluationsPerSecond();
+
+	/**
+	 * Reset all counters and rates.
+	 */
+	void reset();
+}
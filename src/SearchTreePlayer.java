@@ -13,10 +13,19 @@ public class SearchTreePlayer implements PokerSquaresPlayer {
     private Card[][] grid = new Card[SIZE][SIZE]; // grid with Card objects or null (for empty positions)
     private PokerSquaresPointSystem system; // point system
     private final int DEPTH_LIMIT = 2;
-    private Card[] cardsInDeck = new Card[NUM_CARDS];
+    private final Card[] allCards = Card.getAllCards(); // cards indexed by card id
+    private BitDeck cardsInDeck = new BitDeck(); // remaining cards
     private int[] bestPosition = new int[2]; // row, col
     private double bestScore = 0.0;
     private int cardsOnGrid = 0;
+    private long nodeCount = 0; // number of grid placements searched in the current getPlay
+    private long leafCount = 0; // number of grids scored in the current getPlay
+    private LineBitboard lines = new LineBitboard(); // row and column state of the search grid with the root card placed
+    private HandCompletionProbabilities completion = new HandCompletionProbabilities(1 << 16); // line completion distributions
+    private double[] handValues = new double[2 * SIZE]; // evaluateHand value of each row and column of the search grid
+    private double handValueTotal = 0.0; // sum of handValues
+    private double[] cardHandValues = new double[2 * SIZE]; // evaluateHand value of each row and column with the chance card
+    private SearchMetrics metrics = SearchMetrics.getMetrics(getName()); // search throughput counters
 	
 	/* (non-Javadoc)
 	 * @see PokerSquaresPlayer#init()
@@ -27,7 +36,7 @@ public class SearchTreePlayer implements PokerSquaresPlayer {
         for (int row = 0; row < SIZE; row++)
             for (int col = 0; col < SIZE; col++)
                 grid[row][col] = null;
-        cardsInDeck = Card.getAllCards();
+        cardsInDeck.reset();
         initializeBestScorePosition(grid);
         cardsOnGrid = 0;
 	}
@@ -41,7 +50,11 @@ public class SearchTreePlayer implements PokerSquaresPlayer {
         initializeBestScorePosition(grid);
         cardsOnGrid++;
 
+        nodeCount = 0;
+        leafCount = 0;
         depthSearch(card);
+        metrics.addNodes(nodeCount);
+        metrics.addLeafEvaluations(leafCount);
 
         placeCard(card, bestPosition[0], bestPosition[1], grid); // Place card on main grid
         int[] playPosition = {bestPosition[0], bestPosition[1]};
@@ -71,27 +84,29 @@ public class SearchTreePlayer implements PokerSquaresPlayer {
         bestScore = 0.0;
     }
 
-    private void scoreGrid(int row, int col, Card[][] grid){
-        double stateScore = (double)system.getScore(grid);
-        double scoreMultiplier = 1.0;
-
-        // Modify stateScore based on probability of certain hands
+    // Set the row and column state of the grid under which chance cards are placed
+    private void prepareLines(Card[][] grid){
+        lines.set(grid);
+    }
 
-        for(int r=0; r<SIZE; r++){
-            Card[] rowHand = grid[r];
-            scoreMultiplier += evaluateHand(rowHand);
-        }
-
-        for(int c=0; c < SIZE; c++){
-            Card[] columnHand = new Card[SIZE];
-            for(int r=0; r<SIZE; r++){
-                columnHand[r] = grid[r][c];
-            }
-            scoreMultiplier += evaluateHand(columnHand);
+    // Set the hand values of all rows and columns without and with the chance card, completed from the cards remaining after it
+    private void evaluateLines(Card card){
+        long remaining = cardsInDeck.getRemaining() & ~(1L << card.getCardId());
+        handValueTotal = 0.0;
+        for(int line=0; line < 2 * SIZE; line++){
+            handValues[line] = evaluateHand(lines.getRankCounts(line), lines.getSuitMask(line), remaining, lines.getNumCards(line));
+            handValueTotal += handValues[line];
+            cardHandValues[line] = lines.getNumCards(line) < SIZE ? evaluateHand(line, card, remaining) : handValues[line];
         }
+    }
 
-        stateScore *= scoreMultiplier;
+    // Score the search grid with the given card placed at (row, col): the expected final score, given its row and column hand values with the card
+    private double scoreGrid(int row, int col){
+        // only the card's row and column change
+        return handValueTotal - handValues[row] - handValues[SIZE + col] + cardHandValues[row] + cardHandValues[SIZE + col];
+    }
 
+    private void recordScore(int row, int col, double stateScore){
         if (bestScore < stateScore){
             bestPosition[0] = row;
             bestPosition[1] = col;
@@ -99,124 +114,16 @@ public class SearchTreePlayer implements PokerSquaresPlayer {
         }
     }
 
-    private double evaluateHand(Card[] hand){
-        double resultScore = 0.0;
-        double flushScore = 0.0;
-        double straightScore = 0.0;
-        double royalScore = 0.0;
-
-        flushScore = (double)flushCheck(hand);
-        if(flushScore > 0){ resultScore += flushScore; }
-        straightScore = (double)straightCheck(hand);
-        if(straightScore > 0){ resultScore += straightScore; }
-        if(straightScore > 2 && flushScore > 2){ resultScore += 5; }
-        if(flushScore > 2){
-            royalScore = (double)royalCheck(hand);
-            if(royalScore > 0){ resultScore += royalScore * 2; }
-        }
-        return resultScore;
+    // Evaluate the hand value of a line with the given card added
+    private double evaluateHand(int line, Card card, long remaining){
+        return evaluateHand(lines.getRankCounts(line) + (1L << (4 * card.getRank())), lines.getSuitMask(line) | (1 << card.getSuit()),
+                remaining, lines.getNumCards(line) + 1);
     }
 
-    private int flushCheck(Card[] hand){
-        int returnCount = 0;
-        int suit = -1;
-        for(int i=0; i<hand.length; i++){
-            if(hand[i] != null){
-                int currentCardSuit = hand[i].getSuit();
-                if(suit == -1){
-                    suit = currentCardSuit;
-                    returnCount ++; // set to 1
-                }
-                else if (suit == currentCardSuit){
-                    returnCount ++;
-                }
-                else{
-                    return -1; // chance of flush ruined
-                }
-            }
-        }
-        return returnCount; // returns 5 if flush
-    }
-
-    private int straightCheck(Card[] hand){
-        int returnCount = 0;
-        int rank = -1;
-        int nilCount = 0;
-        for(int i=0; i<hand.length; i++){
-            if(hand[i] == null){
-                if(rank == -1){
-                    continue; // only null cards so far
-                }
-                else{
-                    nilCount ++; // track how many nulls between real cards
-                }
-            }
-            else{
-                int currentCardRank = hand[i].getRank();
-                if( currentCardRank < i || currentCardRank > (Card.NUM_RANKS-(hand.length-(i+1))) ){
-                    return -1; // rank out of bounds
-                }
-                if(rank == -1){ // first real card found
-                    rank = currentCardRank;
-                    returnCount ++; // set to 1
-                }
-                else if(currentCardRank == (rank + 1 + nilCount)){
-                    nilCount = 0; // reset nil counter since we found a real card
-                    rank = currentCardRank;
-                    returnCount ++;
-                }
-                else{
-                    return -1;
-                }
-            }
-        }
-        return returnCount; // returns 5 if straight
-    }
-
-    // Check for flush first
-    private int royalCheck(Card[] hand){
-        int returnCount = 1;
-        if(hand[0] != null){
-            if(hand[0].getRank() == 9){
-                returnCount ++;
-            }
-            else{
-                return -1;
-            }
-        }
-        if(hand[1] != null){
-            if(hand[1].getRank() == 10){
-                returnCount ++;
-            }
-            else{
-                return -1;
-            }
-        }
-        if(hand[2] != null){
-            if(hand[2].getRank() == 11){
-                returnCount ++;
-            }
-            else{
-                return -1;
-            }
-        }
-        if(hand[3] != null){
-            if(hand[3].getRank() == 12){
-                returnCount ++;
-            }
-            else{
-                return -1;
-            }
-        }
-        if(hand[4] != null){
-            if(hand[4].getRank() == 0){
-                returnCount ++;
-            }
-            else{
-                return -1;
-            }
-        }
-        return returnCount;
+    // Evaluate the hand value of a line from its packed rank counts and suit mask: its expected score when its empty
+    // positions are filled with random remaining cards (exact hand class distribution times the point system's scores)
+    private double evaluateHand(long rankCounts, int suitMask, long remaining, int numCards){
+        return completion.getExpectedScore(system, rankCounts, suitMask, remaining, SIZE - numCards);
     }
 
     private boolean fullHand(Card[] hand){
@@ -261,27 +168,19 @@ public class SearchTreePlayer implements PokerSquaresPlayer {
         return emptySpot;
     }
 
-    private Card[] removeCardFromRemaining(Card card, Card[] remainingCards){
-        int i=0;
-        while(!card.equals(remainingCards[i]) && i < remainingCards.length){
-            i++;
-        }
-        remainingCards[i] = null;
-        return remainingCards;
-    }
-
     private void depthSearch(Card card){
 
         Card[][] tempGrid = copyGrid(grid);
 
         // remove current card from remaining cards in deck
-        removeCardFromRemaining(card, cardsInDeck);
+        cardsInDeck.remove(card.getCardId());
 
         int[] rootPosition = new int[2];
         int[] bestSpotFound = findFirstEmptySpot(tempGrid, false);
 
         if(DEPTH_LIMIT==1){
             rootPosition = bestSpotFound;
+            prepareLines(tempGrid);
             placeAndScore(card, tempGrid, 1, rootPosition, true);
         }
         else{
@@ -308,21 +207,22 @@ public class SearchTreePlayer implements PokerSquaresPlayer {
                 return;
             }
             else {
+                // score changes and hand values of all positions computed at once from the row and column state
+                if (card != null) {
+                    evaluateLines(card);
+                }
                 for (int row = 0; row < SIZE; row++) {
                     for (int col = 0; col < SIZE; col++) {
                         if (grid[row][col] == null && card != null) {
-                            placeCard(card, row, col, grid); // MAX NODE
-                            // This effects performance so don't use this for real.
-                            // When printing grid, lower the number of chance cards or player will run out of time
-                            // system.printGrid(grid);
-                            // System.out.println("");
+                            nodeCount++; // MAX NODE
+                            leafCount++;
+                            double stateScore = scoreGrid(row, col);
                             if(placingRoot){
-                                scoreGrid(row, col, grid); // Only when DEPTH_LIMIT == 1
+                                recordScore(row, col, stateScore); // Only when DEPTH_LIMIT == 1
                             }
                             else{
-                                scoreGrid(rootPosition[0], rootPosition[1], grid);
+                                recordScore(rootPosition[0], rootPosition[1], stateScore);
                             }
-                            removeCard(row, col, grid);
                         }
                     }
                 }
@@ -330,9 +230,11 @@ public class SearchTreePlayer implements PokerSquaresPlayer {
         }
         else{
             placeCard(card, rootPosition[0], rootPosition[1], grid); // place root card: INITIAL MAX NODE if DEPTH_LIMIT > 1
+            prepareLines(grid);
+            nodeCount++;
             currentDepth ++;
-            for (int i = 0; i < cardsInDeck.length; i++) {
-                placeAndScore(cardsInDeck[i], grid, currentDepth, rootPosition, false); // CHANCE NODE for next card picked
+            for (long remaining = cardsInDeck.getRemaining(); remaining != 0; remaining &= remaining - 1) { // remaining cards in id order
+                placeAndScore(allCards[Long.numberOfTrailingZeros(remaining)], grid, currentDepth, rootPosition, false); // CHANCE NODE for next card picked
             }
         }
     }
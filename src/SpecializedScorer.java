@@ -0,0 +1,270 @@
+/**
+ * SpecializedScorer - a line scorer specialized to the score table of a particular point system.
+ *
+ * A line's hand is the greater (by hand id) of its "of a kind" class, given by its counts of pairs, threes, and fours,
+ * and its straight or flush class, given by its straight, flush, and royal flags (see
+ * {@link PokerHand#getPokerHandIds(long[], int[], int, int, byte[])}).  Many point systems distinguish only some of
+ * these hands, so {@link #getScorer(int[])} inspects the score table once and returns the cheapest scorer that is
+ * exact for it:
+ * <ul>
+ * <li>constant: all hands score the same (e.g. all zero), so no classification is needed;</li>
+ * <li>single hand: one hand scores differently from all others (e.g.
+ * {@link PokerSquaresPointSystem#getSingleHandPointSystem(int)}), so one test for that hand suffices;</li>
+ * <li>kinds only: straights, flushes, straight flushes, and royal flushes score as high card, so only counts of
+ * pairs, threes, and fours are needed;</li>
+ * <li>runs only: pairs and better "of a kind" hands score as high card, so only straight, flush, and royal flags are
+ * needed;</li>
+ * <li>general: full packed classification ({@link PokerHand#getPokerHandId(long, int)}) and table lookup.</li>
+ * </ul>
+ * Scorers are immutable and may be shared between threads.  Each point system builds its scorer once (see
+ * {@link PokerSquaresPointSystem#getScorer()}); players fetch it when given the point system, so that their scoring
+ * call sites see a single scorer class and the JIT compiler can inline it.
+ */
+public abstract class SpecializedScorer {
+
+	private static final long RANK_FIELD_LOW_BITS = 0x1111111111111L; // low bit of each packed 4-bit rank count field
+	private static final long FIVE_CONSECUTIVE_RANKS = 0x11111L; // packed presence of five consecutive ranks
+	private static final long ROYAL_RANKS = 0x1111000000001L; // packed presence of ranks T, J, Q, K, A
+	private static final int[] KIND_IDS = {0, 1, 2, 3, 6, 3, 7, 7, 7, 7, 7, 7}; // "of a kind" ids by pairs + 3 * threes + 6 * fours
+	private static final int[] RUN_IDS = {0, 4, 5, 8, 0, 4, 5, 9}; // straight or flush ids by straight | flush << 1 | royal << 2
+	private static final int[] KIND_HANDS = {PokerHand.ONE_PAIR.id, PokerHand.TWO_PAIR.id, PokerHand.THREE_OF_A_KIND.id,
+			PokerHand.FULL_HOUSE.id, PokerHand.FOUR_OF_A_KIND.id}; // "of a kind" hands other than high card
+	private static final int[] RUN_HANDS = {PokerHand.STRAIGHT.id, PokerHand.FLUSH.id, PokerHand.STRAIGHT_FLUSH.id,
+			PokerHand.ROYAL_FLUSH.id}; // straight or flush hands
+
+	/**
+	 * Return the score of a line given in packed form (see {@link PokerHand#getPokerHandId(long, int)}).
+	 * @param rankCounts rank counts of the line's cards, packed 4 bits per rank
+	 * @param suitMask bitwise or of 1 << suit over the line's cards
+	 * @return the score of the line's hand
+	 */
+	public abstract int getLineScore(long rankCounts, int suitMask);
+
+	/**
+	 * Get a short description of the specialization.
+	 * @return the name of the specialization
+	 */
+	public abstract String getName();
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return getName();
+	}
+
+	/**
+	 * Return the cheapest scorer that is exact for the given score table.
+	 * @param scores hand scores indexed by Poker hand classification identification number
+	 * @return a scorer specialized to the score table
+	 */
+	public static SpecializedScorer getScorer(int[] scores) {
+		final int[] table = scores.clone();
+		final int base = table[PokerHand.HIGH_CARD.id];
+		int numDifferent = 0;
+		int different = -1;
+		for (int id = 0; id < table.length; id++)
+			if (table[id] != base) {
+				numDifferent++;
+				different = id;
+			}
+		if (numDifferent == 0)
+			return getConstantScorer(base);
+		if (numDifferent == 1)
+			return getSingleHandScorer(different, base, table[different] - base);
+		if (allEqual(table, RUN_HANDS, base))
+			return getKindScorer(table);
+		if (allEqual(table, KIND_HANDS, base))
+			return getRunScorer(table);
+		return new SpecializedScorer() {
+			@Override
+			public int getLineScore(long rankCounts, int suitMask) {
+				return table[PokerHand.getPokerHandId(rankCounts, suitMask)];
+			}
+
+			@Override
+			public String getName() {
+				return "general";
+			}
+		};
+	}
+
+	/**
+	 * Return whether the given hands all score the given value.
+	 * @param table hand scores
+	 * @param hands hand ids
+	 * @param value value
+	 * @return whether all given hands score the value
+	 */
+	private static boolean allEqual(int[] table, int[] hands, int value) {
+		for (int id : hands)
+			if (table[id] != value)
+				return false;
+		return true;
+	}
+
+	private static SpecializedScorer getConstantScorer(final int score) {
+		return new SpecializedScorer() {
+			@Override
+			public int getLineScore(long rankCounts, int suitMask) {
+				return score;
+			}
+
+			@Override
+			public String getName() {
+				return "constant " + score;
+			}
+		};
+	}
+
+	private static SpecializedScorer getKindScorer(int[] table) {
+		final int[] kindScores = new int[KIND_IDS.length];
+		for (int i = 0; i < KIND_IDS.length; i++)
+			kindScores[i] = table[KIND_IDS[i]];
+		return new SpecializedScorer() {
+			@Override
+			public int getLineScore(long rankCounts, int suitMask) {
+				return kindScores[getKindIndex(rankCounts)];
+			}
+
+			@Override
+			public String getName() {
+				return "kinds only";
+			}
+		};
+	}
+
+	private static SpecializedScorer getRunScorer(int[] table) {
+		final int[] runScores = new int[RUN_IDS.length];
+		for (int i = 0; i < RUN_IDS.length; i++)
+			runScores[i] = table[RUN_IDS[i]];
+		return new SpecializedScorer() {
+			@Override
+			public int getLineScore(long rankCounts, int suitMask) {
+				long present = getPresent(rankCounts);
+				boolean royal = present == ROYAL_RANKS;
+				return runScores[(isStraight(present) ? 1 : 0) | (isFlush(present, suitMask) ? 2 : 0) | (royal ? 4 : 0)];
+			}
+
+			@Override
+			public String getName() {
+				return "runs only";
+			}
+		};
+	}
+
+	private static SpecializedScorer getSingleHandScorer(final int handId, final int base, final int bonus) {
+		final String name = "single hand " + PokerHand.values()[handId].name;
+		if (handId == PokerHand.FOUR_OF_A_KIND.id)
+			return new SpecializedScorer() {
+				@Override
+				public int getLineScore(long rankCounts, int suitMask) {
+					return ((rankCounts >>> 2) & RANK_FIELD_LOW_BITS) != 0 ? base + bonus : base;
+				}
+
+				@Override
+				public String getName() {
+					return name;
+				}
+			};
+		if (handId == PokerHand.ROYAL_FLUSH.id)
+			return new SpecializedScorer() {
+				@Override
+				public int getLineScore(long rankCounts, int suitMask) {
+					return rankCounts == ROYAL_RANKS && (suitMask & (suitMask - 1)) == 0 ? base + bonus : base;
+				}
+
+				@Override
+				public String getName() {
+					return name;
+				}
+			};
+		if (handId == PokerHand.FLUSH.id || handId == PokerHand.STRAIGHT_FLUSH.id)
+			return new SpecializedScorer() {
+				@Override
+				public int getLineScore(long rankCounts, int suitMask) {
+					if ((suitMask & (suitMask - 1)) != 0) // (no flush of more than one suit)
+						return base;
+					long present = getPresent(rankCounts);
+					int index = (isStraight(present) ? 1 : 0) | (isFlush(present, suitMask) ? 2 : 0) | (present == ROYAL_RANKS ? 4 : 0);
+					return RUN_IDS[index] == handId ? base + bonus : base;
+				}
+
+				@Override
+				public String getName() {
+					return name;
+				}
+			};
+		if (handId == PokerHand.STRAIGHT.id)
+			return new SpecializedScorer() {
+				@Override
+				public int getLineScore(long rankCounts, int suitMask) {
+					long present = getPresent(rankCounts);
+					if (Long.bitCount(present) != 5) // (no straight or flush without five ranks)
+						return base;
+					int index = (isStraight(present) ? 1 : 0) | (isFlush(present, suitMask) ? 2 : 0) | (present == ROYAL_RANKS ? 4 : 0);
+					return RUN_IDS[index] == handId ? base + bonus : base;
+				}
+
+				@Override
+				public String getName() {
+					return name;
+				}
+			};
+		if (handId != PokerHand.HIGH_CARD.id) // (one pair, two pair, three of a kind, or full house)
+			return new SpecializedScorer() {
+				@Override
+				public int getLineScore(long rankCounts, int suitMask) {
+					return KIND_IDS[getKindIndex(rankCounts)] == handId ? base + bonus : base;
+				}
+
+				@Override
+				public String getName() {
+					return name;
+				}
+			};
+		throw new IllegalArgumentException("No single hand scorer for " + PokerHand.values()[handId]);
+	}
+
+	/**
+	 * Return the "of a kind" index of the given packed rank counts: pairs + 3 * threes + 6 * fours.
+	 * @param rankCounts packed rank counts
+	 * @return the "of a kind" index
+	 */
+	private static int getKindIndex(long rankCounts) {
+		int numPairs = Long.bitCount((rankCounts >>> 1) & ~rankCounts & ~(rankCounts >>> 2) & RANK_FIELD_LOW_BITS);
+		int numThrees = Long.bitCount(rankCounts & (rankCounts >>> 1) & ~(rankCounts >>> 2) & RANK_FIELD_LOW_BITS);
+		int numFours = Long.bitCount((rankCounts >>> 2) & RANK_FIELD_LOW_BITS);
+		return numPairs + 3 * numThrees + 6 * numFours;
+	}
+
+	/**
+	 * Return the packed presence (low bit of each rank field set if the rank is held) of the given packed rank counts.
+	 * @param rankCounts packed rank counts
+	 * @return the packed rank presence
+	 */
+	private static long getPresent(long rankCounts) {
+		return (rankCounts | (rankCounts >>> 1) | (rankCounts >>> 2)) & RANK_FIELD_LOW_BITS;
+	}
+
+	/**
+	 * Return whether the given packed rank presence is that of a straight (five consecutive ranks, or ten through ace).
+	 * @param present packed rank presence
+	 * @return whether the ranks make a straight
+	 */
+	private static boolean isStraight(long present) {
+		return present == ROYAL_RANKS || (present != 0 && (present >>> Long.numberOfTrailingZeros(present)) == FIVE_CONSECUTIVE_RANKS);
+	}
+
+	/**
+	 * Return whether a line of the given packed rank presence and suit mask is a flush (five cards of one suit; since
+	 * cards of one suit have distinct ranks, five ranks present).
+	 * @param present packed rank presence
+	 * @param suitMask suit mask
+	 * @return whether the line is a flush
+	 */
+	private static boolean isFlush(long present, int suitMask) {
+		return Long.bitCount(present) == 5 && (suitMask & (suitMask - 1)) == 0;
+	}
+}
@@ -0,0 +1,148 @@
+/**
+ * StatisticsCache - a bounded table of Monte Carlo simulation statistics (score total and simulation count) by
+ * position, for reuse of simulations across moves.
+ *
+ * Positions are keyed by Zobrist hash: the exclusive or of a fixed pseudorandom 64-bit key per (card, cell) placement
+ * (see {@link #getKey(int, int)}), so that a player may update the hash of its grid with one exclusive or per play or
+ * undone play.  The hash of the empty grid, 0, marks an empty slot.
+ *
+ * The table is open-addressed with linear probing over at most MAX_PROBES slots.  Slots are never emptied but by
+ * {@link #clear()}; when all probed slots hold other positions, the one least recently added to (by generation, see
+ * {@link #nextGeneration()}) is replaced.  Statistics are only valid for one point system and one simulation policy
+ * and horizon, so owners clear the cache when these change.
+ */
+public class StatisticsCache {
+
+	private static final int NUM_POS = PokerSquares.SIZE * PokerSquares.SIZE; // number of grid positions
+	private static final int MAX_PROBES = 8; // maximum number of slots probed per position
+	private static final long[] KEYS = new long[Card.NUM_CARDS * NUM_POS]; // Zobrist keys by cardId * NUM_POS + cell
+
+	static {
+		FastRandom random = new FastRandom(0x5EED2B15L);
+		for (int i = 0; i < KEYS.length; i++)
+			KEYS[i] = random.nextLong();
+	}
+
+	private final long[] positions; // position hashes (0 if empty)
+	private final long[] scoreTotals; // simulated score totals
+	private final int[] counts; // numbers of simulations
+	private final int[] generations; // generation of the last addition
+	private int generation = 0; // current generation
+
+	/**
+	 * Create an empty cache of at least the given number of slots (rounded up to a power of two).
+	 * @param capacity minimum number of slots
+	 */
+	public StatisticsCache(int capacity) {
+		int size = Integer.highestOneBit(Math.max(capacity, MAX_PROBES) - 1) << 1;
+		positions = new long[size];
+		scoreTotals = new long[size];
+		counts = new int[size];
+		generations = new int[size];
+	}
+
+	/**
+	 * Get the Zobrist key of the given card placed at the given cell.
+	 * @param cardId card id
+	 * @param cell row-major cell index
+	 * @return the Zobrist key of the placement
+	 */
+	public static long getKey(int cardId, int cell) {
+		return KEYS[cardId * NUM_POS + cell];
+	}
+
+	/**
+	 * Get the number of slots.
+	 * @return the number of slots
+	 */
+	public int getCapacity() {
+		return positions.length;
+	}
+
+	/**
+	 * Remove all statistics.
+	 */
+	public void clear() {
+		for (int slot = 0; slot < positions.length; slot++) {
+			positions[slot] = 0L;
+			scoreTotals[slot] = 0L;
+			counts[slot] = 0;
+			generations[slot] = 0;
+		}
+		generation = 0;
+	}
+
+	/**
+	 * Start a new generation (e.g. per move), so that statistics added from now on are the last to be replaced.
+	 */
+	public void nextGeneration() {
+		generation++;
+	}
+
+	/**
+	 * Add simulated scores to the statistics of the given position.
+	 * @param position position hash (nonzero)
+	 * @param scoreTotal total of the simulated scores
+	 * @param count number of simulated scores
+	 */
+	public void add(long position, long scoreTotal, int count) {
+		int mask = positions.length - 1;
+		int start = (int) position & mask;
+		int victim = -1; // slot to replace if the position is absent
+		for (int i = 0; i < MAX_PROBES; i++) {
+			int slot = (start + i) & mask;
+			if (positions[slot] == position) {
+				scoreTotals[slot] += scoreTotal;
+				counts[slot] += count;
+				generations[slot] = generation;
+				return;
+			}
+			if (positions[slot] == 0L) { // (the position is not further along)
+				victim = slot;
+				break;
+			}
+			if (victim < 0 || generations[slot] - generations[victim] < 0)
+				victim = slot;
+		}
+		positions[victim] = position;
+		scoreTotals[victim] = scoreTotal;
+		counts[victim] = count;
+		generations[victim] = generation;
+	}
+
+	/**
+	 * Find the slot of the given position.
+	 * @param position position hash (nonzero)
+	 * @return the slot of the position, or -1 if absent
+	 */
+	public int find(long position) {
+		int mask = positions.length - 1;
+		int start = (int) position & mask;
+		for (int i = 0; i < MAX_PROBES; i++) {
+			int slot = (start + i) & mask;
+			if (positions[slot] == position)
+				return slot;
+			if (positions[slot] == 0L)
+				return -1;
+		}
+		return -1;
+	}
+
+	/**
+	 * Get the simulated score total of the position in the given slot.
+	 * @param slot slot found by {@link #find(long)}
+	 * @return the simulated score total
+	 */
+	public long getScoreTotal(int slot) {
+		return scoreTotals[slot];
+	}
+
+	/**
+	 * Get the number of simulations of the position in the given slot.
+	 * @param slot slot found by {@link #find(long)}
+	 * @return the number of simulations
+	 */
+	public int getCount(int slot) {
+		return counts[slot];
+	}
+}
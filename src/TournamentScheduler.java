@@ -0,0 +1,207 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * TournamentScheduler - a parallel version of {@link PokerSquares#playTournament(ArrayList, ArrayList, int, long)}.
+ *
+ * A tournament is broken into (player, point system, seed block) tasks.  Each task creates its own player and game, so
+ * players are confined to a single thread, and plays games startSeed + first through startSeed + last of its block.
+ * Tasks run on a work-stealing pool, longest expected duration first, so that slow Monte Carlo players start early
+ * and cheap players fill the gaps.  Each player has a fixed reservation of cores per running game: a task holds that
+ * many of the machine's core permits while it plays, so time-limited players are never starved by oversubscription.
+ * Normalization is performed once all tasks are done.  Since deals depend only on seeds, tournament scores are those
+ * of the serial playTournament on the same inputs (for players whose play is a deterministic function of the deal).
+ */
+public class TournamentScheduler {
+
+	/**
+	 * A player taking part in a scheduled tournament.
+	 */
+	private static class Entrant {
+		Supplier<PokerSquaresPlayer> factory; // supplier of a new, independent player for each task
+		String name; // player name
+		long expectedMillisPerGame; // expected cost of one game
+		int coresPerGame; // cores reserved while a game of this player is running
+	}
+
+	/**
+	 * A block of consecutive games of one player under one point system.
+	 */
+	private static class Task {
+		Entrant entrant; // player
+		int playerIndex; // index of player in tournament
+		int systemIndex; // index of point system in tournament
+		PokerSquaresPointSystem system; // point system
+		long firstSeed; // seed of first game of the block
+		int numGames; // number of games in the block
+		int totalScore; // sum of game scores (valid once the task is done)
+		long expectedMillis() {
+			return entrant.expectedMillisPerGame * numGames;
+		}
+	}
+
+	private final ArrayList<Entrant> entrants = new ArrayList<Entrant>();
+	private int numCores = Runtime.getRuntime().availableProcessors(); // core permits shared by all running games
+	private long targetTaskMillis = 60000L; // expected duration of each seed block
+
+	/**
+	 * Add a time-limited player expected to use its full game time, with one core reserved per game.
+	 * @param factory supplier of a new, independent player instance
+	 */
+	public void addPlayer(Supplier<PokerSquaresPlayer> factory) {
+		addPlayer(factory, PokerSquares.GAME_MILLIS, 1);
+	}
+
+	/**
+	 * Add a player to the tournament.
+	 * @param factory supplier of a new, independent player instance
+	 * @param expectedMillisPerGame expected duration of one game of this player, used to order and size tasks
+	 * @param coresPerGame number of cores reserved for each running game of this player (e.g. 1 for a single-threaded
+	 * time-limited player, or the player's own thread count if it searches in parallel)
+	 */
+	public void addPlayer(Supplier<PokerSquaresPlayer> factory, long expectedMillisPerGame, int coresPerGame) {
+		Entrant entrant = new Entrant();
+		entrant.factory = factory;
+		entrant.name = factory.get().getName();
+		entrant.expectedMillisPerGame = Math.max(1L, expectedMillisPerGame);
+		entrant.coresPerGame = Math.max(1, coresPerGame);
+		entrants.add(entrant);
+	}
+
+	/**
+	 * Set the number of core permits shared among all concurrently running games (default: available processors).
+	 * @param numCores number of core permits
+	 */
+	public void setNumCores(int numCores) {
+		this.numCores = Math.max(1, numCores);
+	}
+
+	/**
+	 * Set the expected duration of each (player, point system, seed block) task.  Longer tasks amortize per-task player
+	 * creation and point system preparation; shorter tasks balance load better.
+	 * @param targetTaskMillis expected duration of each task in milliseconds
+	 */
+	public void setTargetTaskMillis(long targetTaskMillis) {
+		this.targetTaskMillis = Math.max(1L, targetTaskMillis);
+	}
+
+	/**
+	 * Hold a Poker Squares tournament between the added players with the given point systems.  Scoring follows
+	 * {@link PokerSquares#playTournament(ArrayList, ArrayList, int, long)}.
+	 * @param systems Poker Squares point systems used to evaluate players in the tournament
+	 * @param gamesPerSystem the number of games that will be played by each player with each point system
+	 * @param startSeed the start seed for the pseudorandom number generator that generates card deals
+	 * @return the sum of the tournament scores for each of the added players
+	 */
+	public double[] playTournament(ArrayList<PokerSquaresPointSystem> systems, int gamesPerSystem, long startSeed) {
+		// break the tournament into seed blocks of about targetTaskMillis each
+		ArrayList<Task> tasks = new ArrayList<Task>();
+		for (int s = 0; s < systems.size(); s++)
+			for (int p = 0; p < entrants.size(); p++) {
+				Entrant entrant = entrants.get(p);
+				int blockSize = (int) Math.max(1L, Math.min(gamesPerSystem, targetTaskMillis / entrant.expectedMillisPerGame));
+				for (int first = 0; first < gamesPerSystem; first += blockSize) {
+					Task task = new Task();
+					task.entrant = entrant;
+					task.playerIndex = p;
+					task.systemIndex = s;
+					task.system = systems.get(s);
+					task.firstSeed = startSeed + first;
+					task.numGames = Math.min(blockSize, gamesPerSystem - first);
+					tasks.add(task);
+				}
+			}
+		Collections.sort(tasks, new Comparator<Task>() { // longest expected first
+			@Override
+			public int compare(Task a, Task b) {
+				return Long.compare(b.expectedMillis(), a.expectedMillis());
+			}
+		});
+		System.out.printf("%d tasks for %d players, %d point systems, %d games per system, on %d cores\n",
+				tasks.size(), entrants.size(), systems.size(), gamesPerSystem, numCores);
+
+		// run all tasks on a work-stealing pool, each holding its player's core reservation while it plays
+		final Semaphore cores = new Semaphore(numCores, true);
+		ExecutorService executor = Executors.newWorkStealingPool(numCores);
+		try {
+			ArrayList<Future<?>> futures = new ArrayList<Future<?>>();
+			for (final Task task : tasks)
+				futures.add(executor.submit(new Runnable() {
+					@Override
+					public void run() {
+						int permits = Math.min(task.entrant.coresPerGame, numCores);
+						cores.acquireUninterruptibly(permits);
+						try {
+							PokerSquares game = new PokerSquares(task.entrant.factory.get(), task.system);
+							game.setVerbose(false);
+							for (int i = 0; i < task.numGames; i++)
+								task.totalScore += game.play(task.firstSeed + i);
+						}
+						finally {
+							cores.release(permits);
+						}
+					}
+				}));
+			for (Future<?> future : futures)
+				future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while playing tournament", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Tournament task failed", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+
+		// sum seed blocks, then normalize per point system
+		int[][] totalScores = new int[systems.size()][entrants.size()];
+		for (Task task : tasks)
+			totalScores[task.systemIndex][task.playerIndex] += task.totalScore;
+		String[] playerNames = new String[entrants.size()];
+		for (int p = 0; p < entrants.size(); p++)
+			playerNames[p] = entrants.get(p).name;
+		double[] tournamentScores = new double[entrants.size()];
+		for (int s = 0; s < systems.size(); s++) {
+			System.out.println("Point System:\n" + systems.get(s));
+			for (int p = 0; p < entrants.size(); p++)
+				System.out.printf("Player \"%s\" total score: %d\n", playerNames[p], totalScores[s][p]);
+			PokerSquares.accumulateNormalizedScores(playerNames, totalScores[s], tournamentScores);
+		}
+		PokerSquares.printTournamentScores(playerNames, tournamentScores);
+		return tournamentScores;
+	}
+
+	/**
+	 * Demonstrate a scheduled tournament between cheap and time-limited players.
+	 * @param args (not used)
+	 */
+	public static void main(String[] args) {
+		TournamentScheduler scheduler = new TournamentScheduler();
+		scheduler.addPlayer(new Supplier<PokerSquaresPlayer>() {
+			@Override
+			public PokerSquaresPlayer get() {
+				return new FlushPlayer();
+			}
+		}, 1L, 1);
+		scheduler.addPlayer(new Supplier<PokerSquaresPlayer>() {
+			@Override
+			public PokerSquaresPlayer get() {
+				return new GreedyMCPlayer(2);
+			}
+		});
+
+		ArrayList<PokerSquaresPointSystem> systems = new ArrayList<PokerSquaresPointSystem>();
+		PokerSquaresPointSystem.setSeed(42L);
+		systems.add(PokerSquaresPointSystem.getBritishPointSystem());
+		systems.add(PokerSquaresPointSystem.getAmericanPointSystem());
+
+		scheduler.playTournament(systems, 10, 0L);
+	}
+}